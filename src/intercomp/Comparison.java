@@ -0,0 +1,388 @@
+package intercomp;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Immutable result of comparing two types of interactions.
+ * <p>
+ * Holds the sets of genes of both types for every side and the intersection of the selected side, as read-only GeneSets. Nothing in a Comparison changes after it is made, so one result can be read, exported and shared by any number of threads without locking or copying. Changing the side creates a new Comparison that shares the sets of the old one.
+ * <p>
+ * A comparison of the interactions of a file records the path of that file, so the locations of its source rows are only read from the file they point into.
+ *
+ * @author Alexander
+ */
+public final class Comparison {
+
+    /**
+     * The interrupted status of the thread is checked every CHECK_INTERVAL + 1 interactions.
+     */
+    private static final int CHECK_INTERVAL = 0xFFFF;
+
+    private final String typeA;
+    private final String typeB;
+    private final InteractionComperator.Side side;
+    private final List<Interaction> interactions;
+    private final Map<InteractionComperator.Side, GeneSet> groupA;
+    private final Map<InteractionComperator.Side, GeneSet> groupB;
+    private final GeneSet intersection;
+    private final String path;
+    private volatile int[] identifiers;
+
+    /**
+     * Constructor for the result of a comparison.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param side the Side of the interactions whose genes are compared.
+     * @param interactions the List of Interaction objects that were compared, which is not changed afterwards.
+     * @param groupA a Map with the genes of typeA for every side; not changed afterwards.
+     * @param groupB a Map with the genes of typeB for every side; not changed afterwards.
+     */
+    Comparison(String typeA, String typeB, InteractionComperator.Side side, List<Interaction> interactions, Map<InteractionComperator.Side, GeneSet> groupA, Map<InteractionComperator.Side, GeneSet> groupB) {
+        this.typeA = typeA;
+        this.typeB = typeB;
+        this.side = side;
+        this.interactions = interactions;
+        this.groupA = groupA;
+        this.groupB = groupB;
+        this.intersection = groupA.get(side).intersect(groupB.get(side));
+        this.path = null;
+    }
+
+    /**
+     * Constructor for a copy of a comparison for a side and a file, sharing the sets of genes of the other comparison.
+     *
+     * @param other the Comparison to copy.
+     * @param side the Side of the interactions whose genes are compared.
+     * @param path the path of the file whose interactions were compared, null when not known.
+     */
+    private Comparison(Comparison other, InteractionComperator.Side side, String path) {
+        this.typeA = other.typeA;
+        this.typeB = other.typeB;
+        this.side = side;
+        this.interactions = other.interactions;
+        this.groupA = other.groupA;
+        this.groupB = other.groupB;
+        this.path = path;
+        if (side == other.side) {
+            this.intersection = other.intersection;
+            this.identifiers = other.identifiers;
+        } else {
+            this.intersection = groupA.get(side).intersect(groupB.get(side));
+        }
+    }
+
+    /**
+     * Compares two types of interactions in one pass over the interactions.
+     * <p>
+     * Collects the first and the second genes of the interactions of each type, for the sides A and B, and stores them as sorted GeneSets; the sets for either side are their unions. The scan stops when the thread is interrupted, so a comparison that is no longer needed can be cancelled.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param side the Side of the interactions to compare.
+     * @param interactions a List containing the Interaction objects to compare.
+     * @return the Comparison of the two types.
+     * @throws CancellationException when the thread was interrupted during the comparison.
+     */
+    static Comparison compare(String typeA, String typeB, InteractionComperator.Side side, List<Interaction> interactions) {
+        Set<Gene> firstA = new HashSet<>();
+        Set<Gene> secondA = new HashSet<>();
+        Set<Gene> firstB = new HashSet<>();
+        Set<Gene> secondB = new HashSet<>();
+        int scanned = 0;
+        for (Interaction i : interactions) {
+            if ((++scanned & CHECK_INTERVAL) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("The comparison was cancelled");
+            }
+            if (i.getType().equals(typeA)) {
+                firstA.add(i.getGeneA());
+                secondA.add(i.getGeneB());
+            }
+            if (i.getType().equals(typeB)) {
+                firstB.add(i.getGeneA());
+                secondB.add(i.getGeneB());
+            }
+        }
+        return new Comparison(typeA, typeB, side, interactions, group(GeneSet.of(firstA), GeneSet.of(secondA)), group(GeneSet.of(firstB), GeneSet.of(secondB)));
+    }
+
+    /**
+     * Wraps the genes found by a query in a comparison, so they can be exported like the intersection of two types.
+     * <p>
+     * Both types are the query and every side holds the genes of the result, so the intersection is the result. The interactions linked to those genes through the side give the PubMed identifiers and the source rows of the result.
+     *
+     * @param query the text of the query.
+     * @param side the Side of the interactions the query was evaluated on.
+     * @param interactions the List of Interaction objects the query was evaluated on, which is not changed afterwards.
+     * @param genes the GeneSet found by the query.
+     * @return a Comparison whose intersection is the result of the query.
+     */
+    static Comparison of(String query, InteractionComperator.Side side, List<Interaction> interactions, GeneSet genes) {
+        Map<InteractionComperator.Side, GeneSet> group = new EnumMap<>(InteractionComperator.Side.class);
+        for (InteractionComperator.Side s : InteractionComperator.Side.values()) {
+            group.put(s, genes);
+        }
+        return new Comparison(query, query, side, interactions, group, group);
+    }
+
+    /**
+     * Returns the sets of genes of one type for every side.
+     *
+     * @param first the GeneSet of the first genes.
+     * @param second the GeneSet of the second genes.
+     * @return a Map with the GeneSet for every side.
+     */
+    static Map<InteractionComperator.Side, GeneSet> group(GeneSet first, GeneSet second) {
+        Map<InteractionComperator.Side, GeneSet> group = new EnumMap<>(InteractionComperator.Side.class);
+        group.put(InteractionComperator.Side.A, first);
+        group.put(InteractionComperator.Side.B, second);
+        group.put(InteractionComperator.Side.EITHER, first.union(second));
+        return group;
+    }
+
+    /**
+     * Returns the same comparison for another side of the interactions.
+     * <p>
+     * The sets of genes for every side are shared, only the intersection of the new side is calculated.
+     *
+     * @param side the Side of the interactions to compare.
+     * @return a Comparison of the same types for the side.
+     */
+    public Comparison withSide(InteractionComperator.Side side) {
+        return side == this.side ? this : new Comparison(this, side, path);
+    }
+
+    /**
+     * Returns the same comparison, recording the file whose interactions were compared.
+     *
+     * @param path the absolute path of the file the interactions were read from.
+     * @return a Comparison of the same types and side for the file.
+     */
+    Comparison withPath(String path) {
+        return new Comparison(this, side, path);
+    }
+
+    /**
+     * Returns the path of the file whose interactions were compared.
+     *
+     * @return the absolute path of the file, or null when the comparison was not made of the interactions of one file.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the first type of interactions that was compared.
+     *
+     * @return the first type of interactions.
+     */
+    public String getTypeA() {
+        return typeA;
+    }
+
+    /**
+     * Returns the second type of interactions that was compared.
+     *
+     * @return the second type of interactions.
+     */
+    public String getTypeB() {
+        return typeB;
+    }
+
+    /**
+     * Returns the side of the interactions that was compared.
+     *
+     * @return the Side of the interactions whose genes are in the sets.
+     */
+    public InteractionComperator.Side getSide() {
+        return side;
+    }
+
+    /**
+     * Returns the interactions that were compared.
+     *
+     * @return the List of Interaction objects that were compared.
+     */
+    List<Interaction> getInteractions() {
+        return interactions;
+    }
+
+    /**
+     * Returns all the genes of the first type on the compared side.
+     *
+     * @return a read-only GeneSet of the genes with typeA interactions.
+     */
+    public GeneSet getGenesA() {
+        return groupA.get(side);
+    }
+
+    /**
+     * Returns all the genes of the second type on the compared side.
+     *
+     * @return a read-only GeneSet of the genes with typeB interactions.
+     */
+    public GeneSet getGenesB() {
+        return groupB.get(side);
+    }
+
+    /**
+     * Returns all the genes that have an interaction of both types (intersection).
+     *
+     * @return a read-only GeneSet of the genes in the intersection.
+     */
+    public GeneSet getGenesIntersection() {
+        return intersection;
+    }
+
+    /**
+     * Returns all the unique PubMed identifiers linked to the genes in the intersection.
+     * <p>
+     * An interaction is linked to a gene in the intersection through the compared side. The identifiers are collected once in a primitive IntSet; when two threads ask at the same time both collect the same identifiers, so no locking is needed.
+     *
+     * @return a sorted int array containing all unique PubMed identifiers belonging to the genes in the intersection; must not be changed.
+     */
+    int[] getIdentifiers() {
+        int[] result = identifiers;
+        if (result == null) {
+            IntSet collected = new IntSet();
+            for (Interaction i : interactions) {
+                if (isLinked(i)) {
+                    i.addPubMedIDs(collected);
+                }
+            }
+            result = collected.toSortedArray();
+            identifiers = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the locations of the source rows of all interactions linked to the genes in the intersection.
+     *
+     * @return a long array with the locations packed by SourceRows.pack, in the order of the interactions; rows with an unknown location are left out.
+     */
+    long[] getSources() {
+        long[] sources = new long[16];
+        int count = 0;
+        for (Interaction i : interactions) {
+            if (isLinked(i)) {
+                for (int n = 0; n < i.getSourceCount(); n++) {
+                    if (count == sources.length) {
+                        sources = Arrays.copyOf(sources, count * 2);
+                    }
+                    sources[count++] = i.getSource(n);
+                }
+            }
+        }
+        return Arrays.copyOf(sources, count);
+    }
+
+    /**
+     * Checks if an interaction is linked to a gene in the intersection through the compared side.
+     *
+     * @param interaction the Interaction to check.
+     * @return true when the gene of the compared side, or either gene, is in the intersection.
+     */
+    private boolean isLinked(Interaction interaction) {
+        switch (side) {
+            case A:
+                return intersection.contains(interaction.getGeneA());
+            case B:
+                return intersection.contains(interaction.getGeneB());
+            default:
+                return intersection.contains(interaction.getGeneA()) || intersection.contains(interaction.getGeneB());
+        }
+    }
+
+    /**
+     * Exports all information about genes in the intersection in a tab-delimited text file.
+     * <p>
+     * Exports a header beginning with '#' and the names of the columns in a tab-delimited fashion. Exports each gene on a line with tab-delimited values.
+     *
+     * @param path a String absolute path to a file.
+     * @throws FileNotFoundException when the file specified in 'path' can not be found.
+     * @throws IOException when there is a problem with IO in the file.
+     * @throws NullExportException when there are no genes to export.
+     */
+    public void exportGenes(String path) throws FileNotFoundException, IOException, NullExportException {
+        if (!intersection.isEmpty()) {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(path))));
+            writeGenes(writer);
+            writer.close();
+        } else {
+            throw new NullExportException("No genes to export!");
+        }
+    }
+
+    /**
+     * Writes all information about genes in the intersection to a writer in the tab-delimited export format.
+     * <p>
+     * Writes the same header and lines as exportGenes, but leaves the writer open so the output can be streamed to any destination.
+     *
+     * @param writer the Writer to write the genes to.
+     * @throws IOException when there is a problem writing to the writer.
+     * @throws NullExportException when there are no genes to export.
+     */
+    public void writeGenes(Writer writer) throws IOException, NullExportException {
+        if (intersection.isEmpty()) {
+            throw new NullExportException("No genes to export!");
+        }
+        writer.write("#Tax ID\tGene ID\tProduct accession version\tProduct name");
+        for (Gene g : intersection) {
+            writer.append('\n').append(g.getTaxID()).append('\t').append(g.getGeneID()).append('\t').append(g.getAccessionVersion()).append('\t').append(g.getProductName());
+        }
+        writer.flush();
+    }
+
+    /**
+     * Exports all PubMed identifiers associated with the genes in the intersection in a line-delimited text file.
+     * <p>
+     * Exports a header beginning with '#PubMed ID (PMID)'. Exports each PubMed identifier per line.
+     *
+     * @param path a String absolute path to a file.
+     * @throws FileNotFoundException when the file specified in 'path' can not be found.
+     * @throws IOException when there is a problem with IO in the file.
+     * @throws NullExportException when there are no genes to export.
+     */
+    public void exportPubMed(String path) throws FileNotFoundException, IOException, NullExportException {
+        int[] ids = getIdentifiers();
+        if (!intersection.isEmpty() && ids.length > 0) {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(path))));
+            InteractionComperator.writeIdentifiers(ids, writer);
+            writer.close();
+        } else {
+            throw new NullExportException("No PubMed identifiers to export!");
+        }
+    }
+
+    /**
+     * Writes all PubMed identifiers associated with the genes in the intersection to a writer in the line-delimited export format.
+     * <p>
+     * Writes the same header and lines as exportPubMed, but leaves the writer open so the output can be streamed to any destination.
+     *
+     * @param writer the Writer to write the PubMed identifiers to.
+     * @throws IOException when there is a problem writing to the writer.
+     * @throws NullExportException when there are no PubMed identifiers to export.
+     */
+    public void writePubMed(Writer writer) throws IOException, NullExportException {
+        int[] ids = getIdentifiers();
+        if (intersection.isEmpty() || ids.length == 0) {
+            throw new NullExportException("No PubMed identifiers to export!");
+        }
+        InteractionComperator.writeIdentifiers(ids, writer);
+    }
+
+}
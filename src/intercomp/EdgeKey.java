@@ -0,0 +1,46 @@
+package intercomp;
+
+/**
+ * Key of an edge between two genes with a type of interaction, made from their ordinals.
+ * <p>
+ * The hash code is calculated once from the three ordinals, so looking up an edge only compares integers instead of gene identifiers and types.
+ *
+ * @author Alexander
+ */
+final class EdgeKey {
+
+    private final int geneA;
+    private final int geneB;
+    private final int type;
+    private final int hash;
+
+    /**
+     * Constructor for the key of an edge.
+     *
+     * @param geneA the ordinal of the first gene.
+     * @param geneB the ordinal of the second gene.
+     * @param type the ordinal of the type of interaction.
+     */
+    EdgeKey(int geneA, int geneB, int type) {
+        this.geneA = geneA;
+        this.geneB = geneB;
+        this.type = type;
+        long mixed = ((long) geneA << 32 | (geneB & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L + type * 0xC2B2AE3D27D4EB4FL;
+        this.hash = (int) (mixed ^ (mixed >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof EdgeKey) {
+            EdgeKey key = (EdgeKey) other;
+            return geneA == key.geneA && geneB == key.geneB && type == key.type;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+}
@@ -0,0 +1,292 @@
+package intercomp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Class to compare an external list of genes, e.g. from an experiment, with the genes of every type of interactions.
+ * <p>
+ * The gene identifiers of the list are mapped once onto the ordinals of a GeneSetIndex, so the list is a BitSet like the genes of a type. Every type is then intersected with the list in parallel on the BitSets, without making Gene sets; only the overlap of a type that is exported is turned into genes, through a Comparison so the usual gene and PubMed exports are used.
+ *
+ * @author Alexander
+ */
+public class GeneListOverlap {
+
+    private final InteractionsFile file;
+    private final GeneSetIndex index;
+    private final InteractionComperator.Side side;
+    private final BitSet list;
+    private final int listSize;
+    private final List<String> unknown;
+    private final List<Result> results;
+
+    /**
+     * Constructor for the overlap of a list of gene identifiers with every type of an interactions file.
+     *
+     * @param file the InteractionsFile with the types of interactions.
+     * @param geneIDs the gene identifiers of the list; duplicates are counted once.
+     * @param side the Side of the interactions whose genes belong to a type.
+     */
+    public GeneListOverlap(InteractionsFile file, List<String> geneIDs, InteractionComperator.Side side) {
+        this.file = file;
+        this.index = file.getGeneSetIndex();
+        this.side = side;
+        this.list = new BitSet(index.getGeneCount());
+        this.unknown = new ArrayList<>();
+        Set<String> distinct = new HashSet<>();
+        for (String geneID : geneIDs) {
+            if (distinct.add(geneID)) {
+                int ordinal = index.getOrdinal(new Gene(geneID, null, null, null));
+                if (ordinal < 0) {
+                    unknown.add(geneID);
+                } else {
+                    list.set(ordinal);
+                }
+            }
+        }
+        this.listSize = distinct.size();
+        final List<String> types = index.getTypes();
+        final Result[] overlaps = new Result[types.size()];
+        IntStream.range(0, types.size()).parallel().forEach(t -> {
+            BitSet genes = index.genes(types.get(t), side);
+            BitSet overlap = (BitSet) list.clone();
+            overlap.and(genes);
+            overlaps[t] = new Result(types.get(t), genes.cardinality(), overlap);
+        });
+        List<Result> sorted = new ArrayList<>();
+        Collections.addAll(sorted, overlaps);
+        sorted.sort((x, y) -> x.getOverlap() != y.getOverlap() ? Integer.compare(y.getOverlap(), x.getOverlap()) : x.getType().compareTo(y.getType()));
+        this.results = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * Reads a list of gene identifiers from a file.
+     * <p>
+     * The identifier is the first tab-delimited value of every line; empty lines and lines that start with '#' are skipped. The file is read as UTF-8, like the interactions files.
+     *
+     * @param path a absolute path to the file with the gene list.
+     * @return a List of the gene identifiers in the order of the file.
+     * @throws FileNotFoundException when the file is not found.
+     * @throws IOException when there is something wrong with IO of the file.
+     */
+    public static List<String> readList(String path) throws FileNotFoundException, IOException {
+        List<String> geneIDs = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                String geneID = (tab < 0 ? line : line.substring(0, tab)).trim();
+                if (!geneID.isEmpty() && !geneID.startsWith("#")) {
+                    geneIDs.add(geneID);
+                }
+            }
+        }
+        return geneIDs;
+    }
+
+    /**
+     * Returns the number of distinct gene identifiers in the list.
+     *
+     * @return the size of the list, including the identifiers that are not in the file.
+     */
+    public int getListSize() {
+        return listSize;
+    }
+
+    /**
+     * Returns the gene identifiers of the list that are not in the interactions file.
+     *
+     * @return a List of the unknown gene identifiers in the order of the list.
+     */
+    public List<String> getUnknown() {
+        return Collections.unmodifiableList(unknown);
+    }
+
+    /**
+     * Returns the overlap of the list with every type.
+     *
+     * @return a List with a Result per type, the largest overlap first.
+     */
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Returns the overlap of the list with one type as a Comparison, so its genes and PubMed identifiers can be exported like an intersection.
+     *
+     * @param result the Result of the type.
+     * @return a Comparison whose intersection holds the genes of the list that belong to the type.
+     */
+    public Comparison getComparison(Result result) {
+        return Comparison.of("list ∩ " + result.getType(), side, file.getInteractions(), GeneSet.of(index.toGenes(result.overlap))).withPath(file.getPath());
+    }
+
+    /**
+     * Exports the overlap counts of every type in a tab-delimited text file.
+     *
+     * @param path a String absolute path to a file.
+     * @throws FileNotFoundException when the file specified in 'path' can not be found.
+     * @throws IOException when there is a problem with IO in the file.
+     * @throws NullExportException when there are no types to export.
+     */
+    public void export(String path) throws FileNotFoundException, IOException, NullExportException {
+        if (results.isEmpty()) {
+            throw new NullExportException("No types to export!");
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(path))));
+        writer.write("#Type\tGenes\tList genes\tOverlap\tJaccard");
+        for (Result r : results) {
+            writer.write(String.format("\n%s\t%d\t%d\t%d\t%.4f", r.getType(), r.getSize(), listSize, r.getOverlap(), r.getJaccard(listSize)));
+        }
+        writer.close();
+    }
+
+    /**
+     * Exports the genes of the overlap of every type with at least one gene in a directory, one file per type.
+     * <p>
+     * The files are named after the type, with every character that is not a letter, digit, '-' or '.' replaced by '_', and have the format of the genes export. When two types get the same name, ignoring case, the later type in the order of the results gets a numeric suffix, e.g. "binds_to_2.txt", so no file is overwritten.
+     *
+     * @param directory the path to an existing directory.
+     * @return the number of files that were written.
+     * @throws FileNotFoundException when a file can not be created.
+     * @throws IOException when there is a problem with IO in a file.
+     */
+    public int exportGenes(String directory) throws FileNotFoundException, IOException {
+        int written = 0;
+        Set<String> names = new HashSet<>();
+        for (Result r : results) {
+            if (r.getOverlap() > 0) {
+                String base = r.getType().replaceAll("[^A-Za-z0-9.-]", "_");
+                String name = base;
+                for (int suffix = 2; !names.add(name.toLowerCase(Locale.ROOT)); suffix++) {
+                    name = base + "_" + suffix;
+                }
+                try {
+                    getComparison(r).exportGenes(new File(directory, name + ".txt").getPath());
+                    written++;
+                } catch (NullExportException e) {
+                    // Only types with an overlap are exported
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * The overlap of the list with one type of interactions.
+     */
+    public static class Result {
+
+        private final String type;
+        private final int size;
+        private final BitSet overlap;
+        private final int overlapSize;
+
+        Result(String type, int size, BitSet overlap) {
+            this.type = type;
+            this.size = size;
+            this.overlap = overlap;
+            this.overlapSize = overlap.cardinality();
+        }
+
+        /**
+         * Returns the type of interactions.
+         *
+         * @return the type of interactions.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Returns the number of genes of the type.
+         *
+         * @return the number of genes of the type on the compared side.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the number of genes of the list that belong to the type.
+         *
+         * @return the size of the overlap.
+         */
+        public int getOverlap() {
+            return overlapSize;
+        }
+
+        /**
+         * Returns the Jaccard similarity of the list and the type.
+         *
+         * @param listSize the number of distinct genes in the list.
+         * @return the size of the overlap divided by the size of the union, 0 when both are empty.
+         */
+        public double getJaccard(int listSize) {
+            int union = size + listSize - overlapSize;
+            return union == 0 ? 0.0 : (double) overlapSize / union;
+        }
+    }
+
+    /**
+     * Compares a list of genes with every type of interactions in a file.
+     * <p>
+     * Expects the path to the interactions file, the path to the gene list, the side (A, B or EITHER), the path to export the overlap counts to, and optionally an existing directory to export the genes of every overlap to.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length != 4 && args.length != 5) {
+            System.err.println("Usage: GeneListOverlap <interactions file> <gene list> <A|B|EITHER> <export file> [genes export directory]");
+            System.exit(2);
+        }
+        InteractionComperator.Side side = null;
+        try {
+            side = InteractionComperator.Side.valueOf(args[2].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("The side should be A, B or EITHER");
+            System.exit(2);
+        }
+        try {
+            List<String> geneIDs = readList(args[1]);
+            InteractionsFile file = new InteractionsFile(args[0], InteractionsFile.exceedsMemory(args[0]));
+            GeneListOverlap overlap = new GeneListOverlap(file, geneIDs, side);
+            if (!overlap.getUnknown().isEmpty()) {
+                System.err.println(overlap.getUnknown().size() + " of " + overlap.getListSize() + " genes of the list are not in the interactions file");
+            }
+            overlap.export(args[3]);
+            if (args.length == 5) {
+                overlap.exportGenes(args[4]);
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Specified file not found");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("There was a problem reading or writing a file");
+            System.exit(1);
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("The specified file has not the correct format");
+            System.exit(1);
+        } catch (NullExportException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
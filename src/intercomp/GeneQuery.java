@@ -0,0 +1,410 @@
+package intercomp;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query over the sets of genes of types of interactions and organisms, e.g. <code>(binds ∪ activates) \ inhibits ∩ tax:9606</code>.
+ * <p>
+ * An operand is a type of interactions, written as is or between double quotes, or <code>tax:ID</code> for all genes of an organism. The operators are union (∪ or |), intersection (∩ or &amp;) and difference (\ or ∖). All operators have the same precedence and are applied from left to right; parentheses group. The genes of a type are taken from the side of the interactions the query is evaluated on, like in a comparison of two types.
+ * <p>
+ * The query is evaluated on the BitSets of a GeneSetIndex. Chains of the same operator are flattened first. Before a chain is evaluated its operands are ordered on their estimated number of genes: an intersection starts with the smallest operand and a difference removes the largest operands first, and both stop as soon as the result is empty, without evaluating the remaining operands.
+ *
+ * @author Alexander
+ */
+public class GeneQuery {
+
+    private final String text;
+    private final Node root;
+
+    /**
+     * Constructor for a query from its text.
+     *
+     * @param text the text of the query.
+     * @throws IllegalArgumentException when the text is not a valid query.
+     */
+    public GeneQuery(String text) throws IllegalArgumentException {
+        this.text = text;
+        Parser parser = new Parser(text);
+        this.root = parser.expression();
+        parser.skipSpaces();
+        if (parser.position < text.length()) {
+            throw parser.error("Unexpected '" + text.charAt(parser.position) + "'");
+        }
+    }
+
+    /**
+     * Returns the text of the query.
+     *
+     * @return the query as it was written.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the genes found by the query in an index.
+     *
+     * @param index the GeneSetIndex with the genes of every type.
+     * @param side the Side of the interactions whose genes belong to a type.
+     * @return a new BitSet with the ordinals of the genes found by the query.
+     * @throws IllegalArgumentException when the query names a type that is not in the index.
+     */
+    public BitSet evaluate(GeneSetIndex index, InteractionComperator.Side side) throws IllegalArgumentException {
+        Context context = new Context(index, side);
+        BitSet result = root.evaluate(context);
+        return root instanceof Operand ? (BitSet) result.clone() : result;
+    }
+
+    /**
+     * Evaluates the query on an interactions file and returns the result as a Comparison, so the genes, PubMed identifiers and rows of the result can be exported like an intersection.
+     *
+     * @param file the InteractionsFile to evaluate the query on.
+     * @param side the Side of the interactions whose genes belong to a type.
+     * @return a Comparison whose intersection holds the genes found by the query.
+     * @throws IllegalArgumentException when the query names a type that is not in the file.
+     */
+    public Comparison evaluate(InteractionsFile file, InteractionComperator.Side side) throws IllegalArgumentException {
+        GeneSetIndex index = file.getGeneSetIndex();
+        return Comparison.of(text, side, file.getInteractions(), GeneSet.of(index.toGenes(evaluate(index, side)))).withPath(file.getPath());
+    }
+
+    /**
+     * Returns the query with all chains flattened and every operator and group written out, e.g. to see how it is read.
+     *
+     * @return the normalized text of the query.
+     */
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+
+    /**
+     * The sets of the operands of one evaluation, which are looked up only once.
+     */
+    private static class Context {
+
+        private final GeneSetIndex index;
+        private final InteractionComperator.Side side;
+        private final Map<String, BitSet> sets;
+
+        Context(GeneSetIndex index, InteractionComperator.Side side) {
+            this.index = index;
+            this.side = side;
+            this.sets = new HashMap<>();
+        }
+    }
+
+    /**
+     * A part of the query.
+     */
+    private abstract static class Node {
+
+        /**
+         * Estimates the number of genes of the part without evaluating operations.
+         *
+         * @param context the Context of the evaluation.
+         * @return the estimated number of genes.
+         */
+        abstract int estimate(Context context);
+
+        /**
+         * Evaluates the part.
+         *
+         * @param context the Context of the evaluation.
+         * @return the BitSet with the genes of the part; the BitSet of an operand is shared and must not be changed.
+         */
+        abstract BitSet evaluate(Context context);
+    }
+
+    /**
+     * A type of interactions or an organism.
+     */
+    private static class Operand extends Node {
+
+        private final String type;
+        private final String taxID;
+
+        Operand(String type, String taxID) {
+            this.type = type;
+            this.taxID = taxID;
+        }
+
+        @Override
+        int estimate(Context context) {
+            return evaluate(context).cardinality();
+        }
+
+        @Override
+        BitSet evaluate(Context context) {
+            BitSet set = context.sets.get(toString());
+            if (set == null) {
+                if (taxID != null) {
+                    set = context.index.taxon(taxID);
+                } else if (!context.index.getTypes().contains(type)) {
+                    throw new IllegalArgumentException("Unknown type of interaction '" + type + "'");
+                } else {
+                    set = context.index.genes(type, context.side);
+                }
+                context.sets.put(toString(), set);
+            }
+            return set;
+        }
+
+        @Override
+        public String toString() {
+            return taxID != null ? "tax:" + taxID : "\"" + type + "\"";
+        }
+    }
+
+    /**
+     * A chain of operands joined by the same operator.
+     */
+    private static class Operation extends Node {
+
+        private final char operator;
+        private final List<Node> operands;
+
+        Operation(char operator, Node first) {
+            this.operator = operator;
+            this.operands = new ArrayList<>();
+            this.operands.add(first);
+        }
+
+        @Override
+        int estimate(Context context) {
+            if (operator == '\\') {
+                return operands.get(0).estimate(context);
+            }
+            int estimate = operator == '∩' ? Integer.MAX_VALUE : 0;
+            for (int i = 0; i < operands.size(); i++) {
+                int size = operands.get(i).estimate(context);
+                if (operator == '∩') {
+                    estimate = Math.min(estimate, size);
+                } else {
+                    estimate = (int) Math.min(Integer.MAX_VALUE, (long) estimate + size);
+                }
+            }
+            return estimate;
+        }
+
+        @Override
+        BitSet evaluate(Context context) {
+            List<Node> ordered = new ArrayList<>(operands);
+            final Map<Node, Integer> estimates = new HashMap<>();
+            for (Node operand : ordered) {
+                estimates.put(operand, operand.estimate(context));
+            }
+            BitSet result;
+            switch (operator) {
+                case '∩':
+                    ordered.sort((x, y) -> Integer.compare(estimates.get(x), estimates.get(y)));
+                    if (estimates.get(ordered.get(0)) == 0) {
+                        return new BitSet();
+                    }
+                    result = (BitSet) ordered.get(0).evaluate(context).clone();
+                    for (int i = 1; i < ordered.size() && !result.isEmpty(); i++) {
+                        result.and(ordered.get(i).evaluate(context));
+                    }
+                    return result;
+                case '∪':
+                    result = new BitSet();
+                    for (Node operand : ordered) {
+                        if (estimates.get(operand) > 0) {
+                            result.or(operand.evaluate(context));
+                        }
+                    }
+                    return result;
+                default:
+                    Node first = ordered.remove(0);
+                    if (estimates.get(first) == 0) {
+                        return new BitSet();
+                    }
+                    result = (BitSet) first.evaluate(context).clone();
+                    ordered.sort((x, y) -> Integer.compare(estimates.get(y), estimates.get(x)));
+                    for (int i = 0; i < ordered.size() && !result.isEmpty(); i++) {
+                        result.andNot(ordered.get(i).evaluate(context));
+                    }
+                    return result;
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("(");
+            for (int i = 0; i < operands.size(); i++) {
+                builder.append(i == 0 ? "" : " " + operator + " ").append(operands.get(i));
+            }
+            return builder.append(')').toString();
+        }
+    }
+
+    /**
+     * Recursive descent parser of the text of a query.
+     */
+    private static class Parser {
+
+        private static final String OPERATORS = "∪|∩&\\∖";
+        private static final String SPECIAL = OPERATORS + "()\"";
+
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Parses a chain of terms joined by operators, from left to right.
+         *
+         * @return the Node of the chain.
+         */
+        Node expression() {
+            Node node = term();
+            skipSpaces();
+            while (position < text.length() && OPERATORS.indexOf(text.charAt(position)) >= 0) {
+                char operator = normalize(text.charAt(position++));
+                Node next = term();
+                if (!(node instanceof Operation) || ((Operation) node).operator != operator) {
+                    node = new Operation(operator, node);
+                }
+                Operation chain = (Operation) node;
+                // A \ (B \ C) is not A \ B \ C, so only unions and intersections are flattened on the right
+                if (operator != '\\' && next instanceof Operation && ((Operation) next).operator == operator) {
+                    chain.operands.addAll(((Operation) next).operands);
+                } else {
+                    chain.operands.add(next);
+                }
+                skipSpaces();
+            }
+            return node;
+        }
+
+        /**
+         * Parses a group between parentheses or an operand.
+         *
+         * @return the Node of the term.
+         */
+        private Node term() {
+            skipSpaces();
+            if (position >= text.length()) {
+                throw error("Missing type of interactions");
+            }
+            char c = text.charAt(position);
+            if (c == '(') {
+                position++;
+                Node node = expression();
+                skipSpaces();
+                if (position >= text.length() || text.charAt(position) != ')') {
+                    throw error("Missing ')'");
+                }
+                position++;
+                return node;
+            }
+            if (c == '"') {
+                int end = text.indexOf('"', position + 1);
+                if (end < 0) {
+                    throw error("Missing '\"'");
+                }
+                String type = text.substring(position + 1, end);
+                position = end + 1;
+                return new Operand(type, null);
+            }
+            int start = position;
+            while (position < text.length() && SPECIAL.indexOf(text.charAt(position)) < 0) {
+                position++;
+            }
+            String word = text.substring(start, position).trim();
+            if (word.isEmpty()) {
+                throw error("Missing type of interactions");
+            }
+            return word.startsWith("tax:") ? new Operand(null, word.substring(4).trim()) : new Operand(word, null);
+        }
+
+        /**
+         * Returns the Unicode symbol of an operator.
+         *
+         * @param operator the operator as it was written.
+         * @return ∪, ∩ or \.
+         */
+        private static char normalize(char operator) {
+            switch (operator) {
+                case '|':
+                    return '∪';
+                case '&':
+                    return '∩';
+                case '∖':
+                    return '\\';
+                default:
+                    return operator;
+            }
+        }
+
+        void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        /**
+         * Makes the exception for a syntax error at the current position.
+         *
+         * @param message the description of the error.
+         * @return an IllegalArgumentException with the message and the position.
+         */
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + (position + 1) + " of the query");
+        }
+    }
+
+    /**
+     * Exports the genes found by a query in an interactions file, and optionally their PubMed identifiers.
+     * <p>
+     * Expects the path to the interactions file, the query, the side (A, B or EITHER), the path to export the genes to, and optionally the path to export the PubMed identifiers to.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length != 4 && args.length != 5) {
+            System.err.println("Usage: GeneQuery <interactions file> <query> <A|B|EITHER> <genes export file> [PubMed export file]");
+            System.exit(2);
+        }
+        InteractionComperator.Side side = null;
+        try {
+            side = InteractionComperator.Side.valueOf(args[2].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("The side should be A, B or EITHER");
+            System.exit(2);
+        }
+        try {
+            GeneQuery query = new GeneQuery(args[1]);
+            InteractionsFile file = new InteractionsFile(args[0], InteractionsFile.exceedsMemory(args[0]));
+            Comparison result = query.evaluate(file, side);
+            result.exportGenes(args[3]);
+            if (args.length == 5) {
+                result.exportPubMed(args[4]);
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Specified file not found");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("There was a problem reading or writing a file");
+            System.exit(1);
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("The specified file has not the correct format");
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        } catch (NullExportException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package intercomp;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only set of genes stored as a sorted array.
+ * <p>
+ * The genes are sorted on their gene identifiers, so looking up a gene is a binary search and the union and intersection of two sets are a single merge of both arrays. The set takes only one reference per gene and can not be changed after it is made, so it can be shared between threads without copying or locking.
+ *
+ * @author Alexander
+ */
+public final class GeneSet extends AbstractSet<Gene> {
+
+    /**
+     * The empty set of genes.
+     */
+    public static final GeneSet EMPTY = new GeneSet(new Gene[0], 0);
+
+    private final Gene[] genes;
+    private final int size;
+
+    /**
+     * Constructor for a set of the first genes of a sorted array without duplicates. The array is not copied.
+     *
+     * @param genes a sorted array of Gene objects without duplicates.
+     * @param size the number of genes in the array that belong to the set.
+     */
+    private GeneSet(Gene[] genes, int size) {
+        this.genes = genes;
+        this.size = size;
+    }
+
+    /**
+     * Returns a set containing the genes of a collection.
+     *
+     * @param genes a Collection of Gene objects, duplicates are left out.
+     * @return a GeneSet containing the genes.
+     */
+    public static GeneSet of(Collection<Gene> genes) {
+        if (genes instanceof GeneSet) {
+            return (GeneSet) genes;
+        }
+        Gene[] sorted = genes.toArray(new Gene[0]);
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || !sorted[i].equals(sorted[size - 1])) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return new GeneSet(sorted, size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Gene && Arrays.binarySearch(genes, 0, size, (Gene) o) >= 0;
+    }
+
+    @Override
+    public Iterator<Gene> iterator() {
+        return new Iterator<Gene>() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                return position < size;
+            }
+
+            @Override
+            public Gene next() {
+                if (position >= size) {
+                    throw new NoSuchElementException();
+                }
+                return genes[position++];
+            }
+        };
+    }
+
+    /**
+     * Returns the gene at a position in the sorted order.
+     *
+     * @param index the position of the gene, from 0 to size() - 1.
+     * @return the Gene at the position.
+     */
+    public Gene get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return genes[index];
+    }
+
+    /**
+     * Returns the genes that are in both this set and another set, by merging both sorted arrays.
+     *
+     * @param other the GeneSet to intersect with.
+     * @return a GeneSet containing the genes of the intersection.
+     */
+    public GeneSet intersect(GeneSet other) {
+        Gene[] result = new Gene[Math.min(size, other.size)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            int order = genes[i].compareTo(other.genes[j]);
+            if (order == 0) {
+                result[count++] = genes[i];
+            }
+            if (order <= 0) {
+                i++;
+            }
+            if (order >= 0) {
+                j++;
+            }
+        }
+        return count == 0 ? EMPTY : new GeneSet(result, count);
+    }
+
+    /**
+     * Returns the genes that are in this set, another set or both, by merging both sorted arrays.
+     *
+     * @param other the GeneSet to unite with.
+     * @return a GeneSet containing the genes of the union.
+     */
+    public GeneSet union(GeneSet other) {
+        Gene[] result = new Gene[size + other.size];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            int order = i == size ? 1 : j == other.size ? -1 : genes[i].compareTo(other.genes[j]);
+            result[count++] = order <= 0 ? genes[i] : other.genes[j];
+            if (order <= 0) {
+                i++;
+            }
+            if (order >= 0) {
+                j++;
+            }
+        }
+        return new GeneSet(result, count);
+    }
+
+}
@@ -0,0 +1,252 @@
+package intercomp;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact index of the genes that belong to each type of interaction.
+ * <p>
+ * Every distinct gene gets an ordinal number in a dictionary. The genes of a type of interaction are stored as a BitSet of those ordinals, so sets of genes can be combined, counted and shuffled without creating Gene sets. Like InteractionComperator, a gene belongs to a type when it is the second gene of an interaction of that type; the first genes of every type are kept in a second BitSet for the other sides.
+ *
+ * @author Alexander
+ */
+public class GeneSetIndex {
+
+    private final Map<Gene, Integer> ordinals;
+    private final List<Gene> genes;
+    private final Map<String, BitSet> types;
+    private final Map<String, BitSet> typesA;
+    private final BitSet universe;
+
+    /**
+     * Constructor for an empty index; genes and interactions are added with add().
+     */
+    GeneSetIndex() {
+        ordinals = new HashMap<>();
+        genes = new ArrayList<>();
+        types = new HashMap<>();
+        typesA = new HashMap<>();
+        universe = new BitSet();
+    }
+
+    /**
+     * Constructor for an index of all interactions in a collection.
+     *
+     * @param interactions a Collection containing the Interaction objects to index.
+     */
+    public GeneSetIndex(Collection<Interaction> interactions) {
+        this();
+        for (Interaction i : interactions) {
+            add(i);
+        }
+    }
+
+    /**
+     * Adds the genes of one interaction to the dictionary and to the sets of its type.
+     *
+     * @param interaction the Interaction to add.
+     */
+    final void add(Interaction interaction) {
+        int a = ordinal(interaction.getGeneA());
+        int b = ordinal(interaction.getGeneB());
+        BitSet set = types.get(interaction.getType());
+        if (set == null) {
+            set = new BitSet();
+            types.put(interaction.getType(), set);
+            typesA.put(interaction.getType(), new BitSet());
+        }
+        set.set(b);
+        typesA.get(interaction.getType()).set(a);
+        universe.set(b);
+    }
+
+    /**
+     * Returns the ordinal of a gene, adding the gene to the dictionary if it is new.
+     *
+     * @param gene the Gene to look up.
+     * @return the ordinal of the gene.
+     */
+    private int ordinal(Gene gene) {
+        Integer ordinal = ordinals.get(gene);
+        if (ordinal == null) {
+            ordinal = genes.size();
+            ordinals.put(gene, ordinal);
+            genes.add(gene);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Returns the number of distinct genes in the dictionary.
+     *
+     * @return the number of genes that have an ordinal.
+     */
+    public int getGeneCount() {
+        return genes.size();
+    }
+
+    /**
+     * Returns the gene with an ordinal.
+     *
+     * @param ordinal the ordinal of the gene.
+     * @return the Gene with the ordinal.
+     */
+    public Gene getGene(int ordinal) {
+        return genes.get(ordinal);
+    }
+
+    /**
+     * Returns the ordinal of a gene.
+     *
+     * @param gene the Gene to look up.
+     * @return the ordinal of the gene, or -1 when the gene is not in the dictionary.
+     */
+    public int getOrdinal(Gene gene) {
+        Integer ordinal = ordinals.get(gene);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Returns all types of interactions in the index, sorted lexicographically.
+     *
+     * @return a List with all the types of interactions.
+     */
+    public List<String> getTypes() {
+        List<String> sorted = new ArrayList<>(types.keySet());
+        sorted.sort(null);
+        return sorted;
+    }
+
+    /**
+     * Returns the ordinals of the genes that belong to a type of interaction.
+     *
+     * @param type the type of interactions.
+     * @return a new BitSet with the ordinals of the genes; empty when the type is unknown.
+     */
+    public BitSet getGenes(String type) {
+        return (BitSet) genes(type).clone();
+    }
+
+    /**
+     * Returns the ordinals of all genes that belong to any type of interaction.
+     *
+     * @return a new BitSet with the ordinals of all genes that can be in a set.
+     */
+    public BitSet getUniverse() {
+        return (BitSet) universe.clone();
+    }
+
+    /**
+     * Returns the internal BitSet of a type without copying it. The BitSet must not be changed.
+     *
+     * @param type the type of interactions.
+     * @return the BitSet with the ordinals of the genes; empty when the type is unknown.
+     */
+    BitSet genes(String type) {
+        BitSet set = types.get(type);
+        return set == null ? new BitSet() : set;
+    }
+
+    /**
+     * Returns the ordinals of the genes of a type of interaction on one side.
+     *
+     * @param type the type of interactions.
+     * @param side the Side of the interactions whose genes are returned.
+     * @return the internal BitSet for side A or B, which must not be changed, or a new BitSet with the genes of both sides; empty when the type is unknown.
+     */
+    BitSet genes(String type, InteractionComperator.Side side) {
+        switch (side) {
+            case A:
+                BitSet set = typesA.get(type);
+                return set == null ? new BitSet() : set;
+            case B:
+                return genes(type);
+            default:
+                BitSet either = (BitSet) genes(type, InteractionComperator.Side.A).clone();
+                either.or(genes(type));
+                return either;
+        }
+    }
+
+    /**
+     * Returns the ordinals of all genes of an organism.
+     *
+     * @param taxID the taxonomy identifier of the organism.
+     * @return a new BitSet with the ordinals of the genes with the taxonomy identifier.
+     */
+    BitSet taxon(String taxID) {
+        BitSet set = new BitSet();
+        for (int ordinal = 0; ordinal < genes.size(); ordinal++) {
+            if (genes.get(ordinal).getTaxID().equals(taxID)) {
+                set.set(ordinal);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Returns the internal BitSet of all genes that belong to any type without copying it. The BitSet must not be changed.
+     *
+     * @return the BitSet with the ordinals of all genes that can be in a set.
+     */
+    BitSet universe() {
+        return universe;
+    }
+
+    /**
+     * Returns a read-only Set view of the genes in a BitSet of ordinals.
+     *
+     * @param set the BitSet with ordinals of this index. The BitSet must not be changed while the view is used.
+     * @return a Set of Gene objects backed by the BitSet.
+     */
+    public Set<Gene> toGenes(final BitSet set) {
+        return new AbstractSet<Gene>() {
+            private final int size = set.cardinality();
+
+            @Override
+            public Iterator<Gene> iterator() {
+                return new Iterator<Gene>() {
+                    private int next = set.nextSetBit(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    @Override
+                    public Gene next() {
+                        if (next < 0) {
+                            throw new NoSuchElementException();
+                        }
+                        Gene gene = genes.get(next);
+                        next = set.nextSetBit(next + 1);
+                        return gene;
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object other) {
+                if (!(other instanceof Gene)) {
+                    return false;
+                }
+                int ordinal = getOrdinal((Gene) other);
+                return ordinal >= 0 && set.get(ordinal);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+}
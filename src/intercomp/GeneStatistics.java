@@ -0,0 +1,590 @@
+package intercomp;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Class with the number of interactions of every gene per type of interaction, to find hub genes and outliers.
+ * <p>
+ * The degree of a gene in a type is the number of interactions of that type the gene takes part in, as the first or the second gene. The degrees are counted in one pass over the interactions, which are sorted on type, so every type is a block of interactions that is counted on its own. The blocks of an in-memory list are counted in parallel, largest first, by workers that each own a dense array of counters indexed by the ordinals of a GeneSetIndex; only the counters that were touched are read and reset after a block. A spilled list can only be read sequentially and is counted by a single worker.
+ * <p>
+ * The counts are exact. Per type only the genes with interactions are kept, as two sorted int arrays, so the statistics take less memory than the GeneSetIndex they refer to.
+ *
+ * @author Alexander
+ */
+public class GeneStatistics {
+
+    /**
+     * The default number of most connected genes that is kept per type.
+     */
+    public static final int DEFAULT_TOP = 10;
+
+    private final GeneSetIndex index;
+    private final int top;
+    private final Map<String, TypeStatistics> types;
+    private final int[] degrees;
+
+    /**
+     * Constructor for the statistics of all interactions in a list.
+     *
+     * @param index the GeneSetIndex with the ordinals of all genes of the interactions.
+     * @param interactions a List of Interaction objects sorted on type, like the list of an InteractionsFile.
+     * @param top the number of most connected genes to keep per type.
+     */
+    public GeneStatistics(GeneSetIndex index, List<Interaction> interactions, int top) {
+        this.index = index;
+        this.top = top;
+        this.types = new TreeMap<>();
+        this.degrees = new int[index.getGeneCount()];
+        if (interactions instanceof RandomAccess) {
+            countBlocks(interactions);
+        } else {
+            countSequential(interactions);
+        }
+        for (TypeStatistics statistics : types.values()) {
+            for (int g = 0; g < statistics.genes.length; g++) {
+                degrees[statistics.genes[g]] += statistics.degrees[g];
+            }
+        }
+    }
+
+    /**
+     * Counts the degrees of every type block of a random access list in parallel.
+     *
+     * @param interactions a random access List of Interaction objects sorted on type.
+     */
+    private void countBlocks(final List<Interaction> interactions) {
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 0; i < interactions.size(); i++) {
+            if (i == 0 || !interactions.get(i).getType().equals(interactions.get(i - 1).getType())) {
+                starts.add(i);
+            }
+        }
+        starts.add(interactions.size());
+        final int[][] blocks = new int[starts.size() - 1][];
+        for (int b = 0; b < blocks.length; b++) {
+            blocks[b] = new int[]{starts.get(b), starts.get(b + 1)};
+        }
+        // Counting the largest types first keeps all workers busy until the end
+        Arrays.sort(blocks, (x, y) -> Integer.compare(y[1] - y[0], x[1] - x[0]));
+        final TypeStatistics[] results = new TypeStatistics[blocks.length];
+        final AtomicInteger next = new AtomicInteger();
+        int workers = Math.max(1, Math.min(blocks.length, ForkJoinPool.getCommonPoolParallelism()));
+        IntStream.range(0, workers).parallel().forEach(w -> {
+            Counter counter = new Counter(degrees.length);
+            for (int b = next.getAndIncrement(); b < blocks.length; b = next.getAndIncrement()) {
+                for (int i = blocks[b][0]; i < blocks[b][1]; i++) {
+                    counter.add(interactions.get(i));
+                }
+                results[b] = counter.finish(interactions.get(blocks[b][0]).getType(), blocks[b][1] - blocks[b][0]);
+            }
+        });
+        for (TypeStatistics statistics : results) {
+            types.put(statistics.getType(), statistics);
+        }
+    }
+
+    /**
+     * Counts the degrees of every type block of a list that can only be read from start to end.
+     *
+     * @param interactions a List of Interaction objects sorted on type.
+     */
+    private void countSequential(List<Interaction> interactions) {
+        Counter counter = new Counter(degrees.length);
+        String type = null;
+        int count = 0;
+        for (Interaction i : interactions) {
+            if (!i.getType().equals(type)) {
+                if (type != null) {
+                    types.put(type, counter.finish(type, count));
+                }
+                type = i.getType();
+                count = 0;
+            }
+            counter.add(i);
+            count++;
+        }
+        if (type != null) {
+            types.put(type, counter.finish(type, count));
+        }
+    }
+
+    /**
+     * Returns the index that the ordinals of the genes refer to.
+     *
+     * @return the GeneSetIndex with the genes of every type of interaction.
+     */
+    public GeneSetIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the number of most connected genes that is kept per type.
+     *
+     * @return the maximum number of genes returned by getTopGenes().
+     */
+    public int getTop() {
+        return top;
+    }
+
+    /**
+     * Returns all types of interactions with statistics, sorted lexicographically.
+     *
+     * @return a List with all the types of interactions.
+     */
+    public List<String> getTypes() {
+        return new ArrayList<>(types.keySet());
+    }
+
+    /**
+     * Returns the statistics of one type of interactions.
+     *
+     * @param type the type of interactions.
+     * @return the TypeStatistics of the type, or null when the type has no interactions.
+     */
+    public TypeStatistics getType(String type) {
+        return types.get(type);
+    }
+
+    /**
+     * Returns the number of interactions of any type a gene takes part in.
+     *
+     * @param gene the Gene to look up.
+     * @return the degree of the gene over all types, 0 when the gene has no interactions.
+     */
+    public int getDegree(Gene gene) {
+        int ordinal = index.getOrdinal(gene);
+        return ordinal < 0 || ordinal >= degrees.length ? 0 : degrees[ordinal];
+    }
+
+    /**
+     * Returns the genes with the most interactions over all types.
+     *
+     * @param n the maximum number of genes to return.
+     * @return a List of at most n GeneDegree objects, the most connected gene first.
+     */
+    public List<GeneDegree> getTopGenes(int n) {
+        long[] largest = new long[Math.max(0, Math.min(n, degrees.length))];
+        int size = 0;
+        for (int g = 0; g < degrees.length; g++) {
+            if (degrees[g] > 0) {
+                size = offer(largest, size, key(degrees[g], g));
+            }
+        }
+        return toGenes(largest, size);
+    }
+
+    /**
+     * Exports a summary per type in a tab-delimited text file, with the most connected genes of every type.
+     *
+     * @param path a String absolute path to a file.
+     * @throws FileNotFoundException when the file specified in 'path' can not be found.
+     * @throws IOException when there is a problem with IO in the file.
+     * @throws NullExportException when there are no types to export.
+     */
+    public void exportSummary(String path) throws FileNotFoundException, IOException, NullExportException {
+        if (types.isEmpty()) {
+            throw new NullExportException("No statistics to export!");
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(path))));
+        writer.write("#Type\tInteractions\tGenes\tMean degree\tMedian degree\tMax degree\tTop genes");
+        for (TypeStatistics t : types.values()) {
+            StringBuilder hubs = new StringBuilder();
+            for (GeneDegree hub : t.getTopGenes()) {
+                hubs.append(hubs.length() == 0 ? "" : ",").append(hub.getGene().getGeneID()).append(':').append(hub.getDegree());
+            }
+            writer.write(String.format("\n%s\t%d\t%d\t%.3f\t%d\t%d\t%s", t.getType(), t.getInteractionCount(), t.getGeneCount(), t.getMeanDegree(), t.getMedianDegree(), t.getMaxDegree(), hubs));
+        }
+        writer.close();
+    }
+
+    /**
+     * Exports the degree of every gene in every type in a tab-delimited text file, the most connected genes of a type first.
+     *
+     * @param path a String absolute path to a file.
+     * @throws FileNotFoundException when the file specified in 'path' can not be found.
+     * @throws IOException when there is a problem with IO in the file.
+     * @throws NullExportException when there are no types to export.
+     */
+    public void exportDegrees(String path) throws FileNotFoundException, IOException, NullExportException {
+        if (types.isEmpty()) {
+            throw new NullExportException("No statistics to export!");
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(path))));
+        writer.write("#Type\tTax ID\tGene ID\tDegree");
+        for (TypeStatistics t : types.values()) {
+            long[] keys = new long[t.genes.length];
+            for (int g = 0; g < keys.length; g++) {
+                keys[g] = key(t.degrees[g], t.genes[g]);
+            }
+            Arrays.sort(keys);
+            for (int g = keys.length - 1; g >= 0; g--) {
+                Gene gene = index.getGene(ordinal(keys[g]));
+                writer.write("\n" + t.getType() + "\t" + gene.getTaxID() + "\t" + gene.getGeneID() + "\t" + (keys[g] >>> 32));
+            }
+        }
+        writer.close();
+    }
+
+    /**
+     * Exports the degree distribution of every type in a tab-delimited text file.
+     *
+     * @param path a String absolute path to a file.
+     * @throws FileNotFoundException when the file specified in 'path' can not be found.
+     * @throws IOException when there is a problem with IO in the file.
+     * @throws NullExportException when there are no types to export.
+     */
+    public void exportDistribution(String path) throws FileNotFoundException, IOException, NullExportException {
+        if (types.isEmpty()) {
+            throw new NullExportException("No statistics to export!");
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(path))));
+        writer.write("#Type\tDegree\tGenes");
+        for (TypeStatistics t : types.values()) {
+            for (Map.Entry<Integer, Integer> entry : t.getDistribution().entrySet()) {
+                writer.write("\n" + t.getType() + "\t" + entry.getKey() + "\t" + entry.getValue());
+            }
+        }
+        writer.close();
+    }
+
+    /**
+     * Packs a degree and an ordinal in one long, so sorting the longs sorts on degree and then on the ordinal, lowest ordinal last.
+     *
+     * @param degree the degree of the gene.
+     * @param ordinal the ordinal of the gene.
+     * @return the packed key.
+     */
+    private static long key(int degree, int ordinal) {
+        return (long) degree << 32 | (0xFFFFFFFFL - ordinal);
+    }
+
+    /**
+     * Returns the ordinal of a packed key.
+     *
+     * @param key the key made by key().
+     * @return the ordinal of the gene.
+     */
+    private static int ordinal(long key) {
+        return (int) (0xFFFFFFFFL - (key & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Offers a key to a min-heap that keeps the largest keys, replacing the smallest key when the heap is full.
+     *
+     * @param heap the array with the heap; its length is the number of keys to keep.
+     * @param size the number of keys in the heap.
+     * @param key the key to offer.
+     * @return the new number of keys in the heap.
+     */
+    private static int offer(long[] heap, int size, long key) {
+        int position;
+        if (size < heap.length) {
+            position = size++;
+            while (position > 0 && heap[(position - 1) / 2] > key) {
+                heap[position] = heap[(position - 1) / 2];
+                position = (position - 1) / 2;
+            }
+        } else if (size > 0 && key > heap[0]) {
+            position = 0;
+            while (2 * position + 1 < size) {
+                int child = 2 * position + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= key) {
+                    break;
+                }
+                heap[position] = heap[child];
+                position = child;
+            }
+        } else {
+            return size;
+        }
+        heap[position] = key;
+        return size;
+    }
+
+    /**
+     * Turns the keys of a heap into genes with their degree.
+     *
+     * @param heap the array with the heap.
+     * @param size the number of keys in the heap.
+     * @return a List of GeneDegree objects, the largest degree first.
+     */
+    private List<GeneDegree> toGenes(long[] heap, int size) {
+        long[] sorted = Arrays.copyOf(heap, size);
+        Arrays.sort(sorted);
+        List<GeneDegree> genes = new ArrayList<>();
+        for (int i = sorted.length - 1; i >= 0; i--) {
+            genes.add(new GeneDegree(index.getGene(ordinal(sorted[i])), (int) (sorted[i] >>> 32)));
+        }
+        return genes;
+    }
+
+    /**
+     * Dense counters of the genes of one type block, owned by one worker.
+     */
+    private class Counter {
+
+        private final int[] counts;
+        private int[] touched;
+        private int size;
+
+        Counter(int genes) {
+            counts = new int[genes];
+            touched = new int[16];
+        }
+
+        /**
+         * Counts both genes of an interaction, a gene that interacts with itself only once.
+         *
+         * @param interaction the Interaction to count.
+         */
+        void add(Interaction interaction) {
+            int a = index.getOrdinal(interaction.getGeneA());
+            int b = index.getOrdinal(interaction.getGeneB());
+            add(a);
+            if (b != a) {
+                add(b);
+            }
+        }
+
+        private void add(int ordinal) {
+            if (counts[ordinal]++ == 0) {
+                if (size == touched.length) {
+                    touched = Arrays.copyOf(touched, size * 2);
+                }
+                touched[size++] = ordinal;
+            }
+        }
+
+        /**
+         * Collects the counted genes of a block into TypeStatistics and resets the counters for the next block.
+         *
+         * @param type the type of the block.
+         * @param interactions the number of interactions in the block.
+         * @return the TypeStatistics of the block.
+         */
+        TypeStatistics finish(String type, int interactions) {
+            int[] genes = Arrays.copyOf(touched, size);
+            Arrays.sort(genes);
+            int[] degrees = new int[genes.length];
+            long[] largest = new long[Math.min(top, genes.length)];
+            int heapSize = 0;
+            for (int g = 0; g < genes.length; g++) {
+                degrees[g] = counts[genes[g]];
+                counts[genes[g]] = 0;
+                heapSize = offer(largest, heapSize, key(degrees[g], genes[g]));
+            }
+            size = 0;
+            return new TypeStatistics(type, interactions, genes, degrees, toGenes(largest, heapSize));
+        }
+    }
+
+    /**
+     * The degrees of the genes of one type of interactions.
+     */
+    public class TypeStatistics {
+
+        private final String type;
+        private final int interactions;
+        private final int[] genes;
+        private final int[] degrees;
+        private final List<GeneDegree> topGenes;
+
+        TypeStatistics(String type, int interactions, int[] genes, int[] degrees, List<GeneDegree> topGenes) {
+            this.type = type;
+            this.interactions = interactions;
+            this.genes = genes;
+            this.degrees = degrees;
+            this.topGenes = Collections.unmodifiableList(topGenes);
+        }
+
+        /**
+         * Returns the type of interactions.
+         *
+         * @return the type of interactions.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Returns the number of interactions of the type.
+         *
+         * @return the number of interactions.
+         */
+        public int getInteractionCount() {
+            return interactions;
+        }
+
+        /**
+         * Returns the number of genes with interactions of the type, on either side.
+         *
+         * @return the number of genes with a degree of at least 1.
+         */
+        public int getGeneCount() {
+            return genes.length;
+        }
+
+        /**
+         * Returns the number of interactions of the type a gene takes part in.
+         *
+         * @param gene the Gene to look up.
+         * @return the degree of the gene, 0 when the gene has no interactions of the type.
+         */
+        public int getDegree(Gene gene) {
+            int position = Arrays.binarySearch(genes, index.getOrdinal(gene));
+            return position < 0 ? 0 : degrees[position];
+        }
+
+        /**
+         * Returns the highest degree of a gene in the type.
+         *
+         * @return the degree of the most connected gene, 0 when the type has no genes.
+         */
+        public int getMaxDegree() {
+            return topGenes.isEmpty() ? 0 : topGenes.get(0).getDegree();
+        }
+
+        /**
+         * Returns the mean degree of the genes of the type.
+         *
+         * @return the mean number of interactions per gene, 0 when the type has no genes.
+         */
+        public double getMeanDegree() {
+            long sum = 0;
+            for (int degree : degrees) {
+                sum += degree;
+            }
+            return genes.length == 0 ? 0.0 : (double) sum / genes.length;
+        }
+
+        /**
+         * Returns the median degree of the genes of the type.
+         *
+         * @return the lower median of the number of interactions per gene, 0 when the type has no genes.
+         */
+        public int getMedianDegree() {
+            if (degrees.length == 0) {
+                return 0;
+            }
+            int[] sorted = degrees.clone();
+            Arrays.sort(sorted);
+            return sorted[(sorted.length - 1) / 2];
+        }
+
+        /**
+         * Returns the degree distribution of the type.
+         *
+         * @return a Map from every degree that occurs to the number of genes with that degree, sorted on degree.
+         */
+        public Map<Integer, Integer> getDistribution() {
+            Map<Integer, Integer> distribution = new TreeMap<>();
+            for (int degree : degrees) {
+                distribution.merge(degree, 1, Integer::sum);
+            }
+            return distribution;
+        }
+
+        /**
+         * Returns the most connected genes of the type.
+         *
+         * @return a List of at most getTop() GeneDegree objects, the most connected gene first.
+         */
+        public List<GeneDegree> getTopGenes() {
+            return topGenes;
+        }
+    }
+
+    /**
+     * A gene with its number of interactions.
+     */
+    public static class GeneDegree {
+
+        private final Gene gene;
+        private final int degree;
+
+        GeneDegree(Gene gene, int degree) {
+            this.gene = gene;
+            this.degree = degree;
+        }
+
+        /**
+         * Returns the gene.
+         *
+         * @return the Gene.
+         */
+        public Gene getGene() {
+            return gene;
+        }
+
+        /**
+         * Returns the number of interactions the gene takes part in.
+         *
+         * @return the degree of the gene.
+         */
+        public int getDegree() {
+            return degree;
+        }
+    }
+
+    /**
+     * Exports the degree statistics of an interactions file.
+     * <p>
+     * Expects the path to the interactions file, the kind of export (summary, degrees or distribution), the path to export to, and optionally the number of most connected genes per type in the summary (default DEFAULT_TOP).
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if ((args.length != 3 && args.length != 4) || !Arrays.asList("summary", "degrees", "distribution").contains(args[1])) {
+            System.err.println("Usage: GeneStatistics <interactions file> <summary|degrees|distribution> <export file> [top]");
+            System.exit(2);
+        }
+        try {
+            InteractionsFile file = new InteractionsFile(args[0], InteractionsFile.exceedsMemory(args[0]));
+            GeneStatistics statistics = args.length == 4 ? file.getGeneStatistics(Integer.parseInt(args[3])) : file.getGeneStatistics();
+            switch (args[1]) {
+                case "summary":
+                    statistics.exportSummary(args[2]);
+                    break;
+                case "degrees":
+                    statistics.exportDegrees(args[2]);
+                    break;
+                default:
+                    statistics.exportDistribution(args[2]);
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Specified file not found");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("There was a problem reading or writing a file");
+            System.exit(1);
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("The specified file has not the correct format");
+            System.exit(1);
+        } catch (NumberFormatException e) {
+            System.err.println("The number of top genes should be a number");
+            System.exit(2);
+        } catch (NullExportException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
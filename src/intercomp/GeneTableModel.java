@@ -0,0 +1,307 @@
+package intercomp;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model that shows a (large) set of genes without copying their values into the table.
+ * <p>
+ * The model only keeps the Gene objects and an array with the order of the visible rows. Cell values are read from the genes when the table asks for them, which is only for the rows on screen. Sorting and filtering create a new row order in a background SwingWorker; the table is updated when the new order is ready, and a newer sort or filter cancels an older one.
+ *
+ * @author Alexander
+ */
+public class GeneTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNS = {"Tax ID", "Gene ID", "Product accession version", "Product name"};
+
+    private final Gene[] genes;
+    private int[] rows;
+    private String filter = "";
+    private int sortColumn = -1;
+    private boolean ascending = true;
+    private SwingWorker<int[], Void> worker;
+
+    /**
+     * Constructor for a model showing a collection of genes in their original order.
+     *
+     * @param genes a Collection of Gene objects to show.
+     */
+    public GeneTableModel(Collection<Gene> genes) {
+        this.genes = genes.toArray(new Gene[0]);
+        this.rows = new int[this.genes.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        return value(genes[rows[row]], column);
+    }
+
+    /**
+     * Returns the gene shown in a row.
+     *
+     * @param row the index of the row in the table.
+     * @return the Gene shown in the row.
+     */
+    public Gene getGene(int row) {
+        return genes[rows[row]];
+    }
+
+    /**
+     * Returns the number of genes in the model, including the genes hidden by the filter.
+     *
+     * @return the total number of genes.
+     */
+    public int getTotalCount() {
+        return genes.length;
+    }
+
+    /**
+     * Returns whether a sort or filter is still running in the background.
+     *
+     * @return true when the rows are being updated.
+     */
+    public boolean isUpdating() {
+        return worker != null && !worker.isDone();
+    }
+
+    /**
+     * Shows only the genes that contain a text in one of their columns, ignoring case.
+     *
+     * @param filter the text to search for; an empty String shows all genes.
+     */
+    public void setFilter(String filter) {
+        if (!filter.equals(this.filter)) {
+            this.filter = filter;
+            update();
+        }
+    }
+
+    /**
+     * Sorts the rows on a column. Sorting on the same column again reverses the order.
+     *
+     * @param column the index of the column to sort on.
+     */
+    public void sortBy(int column) {
+        ascending = column != sortColumn || !ascending;
+        sortColumn = column;
+        update();
+    }
+
+    /**
+     * Finds the next row with a Gene ID or product name that starts with a text, ignoring case.
+     * <p>
+     * Searches from a starting row to the end and continues at the top, so calling it again with the next row finds the next match.
+     *
+     * @param text the text the gene identifier or product name should start with.
+     * @param from the index of the row to start searching from.
+     * @return the index of the first matching row, or -1 when no row matches.
+     */
+    public int find(String text, int from) {
+        if (text.isEmpty() || rows.length == 0) {
+            return -1;
+        }
+        int start = Math.max(0, Math.min(from, rows.length - 1));
+        for (int n = 0; n < rows.length; n++) {
+            int row = (start + n) % rows.length;
+            Gene g = genes[rows[row]];
+            if (g.getGeneID().regionMatches(true, 0, text, 0, text.length()) || g.getProductName().regionMatches(true, 0, text, 0, text.length())) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Starts a background worker that filters and sorts the genes with the current settings, replacing any running worker.
+     */
+    private void update() {
+        if (worker != null) {
+            worker.cancel(true);
+        }
+        final String text = filter;
+        final int column = sortColumn;
+        final boolean order = ascending;
+        worker = new SwingWorker<int[], Void>() {
+            @Override
+            protected int[] doInBackground() {
+                int[] matches = new int[genes.length];
+                int count = 0;
+                for (int i = 0; i < genes.length; i++) {
+                    if (matches(genes[i], text)) {
+                        matches[count++] = i;
+                    }
+                    if ((i & 0xFFF) == 0 && isCancelled()) {
+                        return null;
+                    }
+                }
+                if (column < 0) {
+                    return Arrays.copyOf(matches, count);
+                }
+                int[] sorted = Arrays.copyOf(matches, count);
+                sort(sorted, new int[count], 0, count, column, order);
+                return sorted;
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled() || worker != this) {
+                    return;
+                }
+                try {
+                    rows = get();
+                    fireTableDataChanged();
+                } catch (InterruptedException e) {
+                    // Keep showing the previous rows
+                } catch (ExecutionException e) {
+                    // The previous rows are kept, but the user is told that the new order failed
+                    JOptionPane.showMessageDialog(null, "Unreported error occured: " + e.getCause(), "Error", 0);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * Sorts a range of row numbers on the values of a column with a stable merge sort, so the rows are sorted as ints without boxing them.
+     *
+     * @param sorted the row numbers to sort.
+     * @param buffer an array of the same length used while merging.
+     * @param from the first index of the range.
+     * @param to the index after the range.
+     * @param column the index of the column to sort on.
+     * @param ascending true to sort in ascending order, false for descending.
+     */
+    private void sort(int[] sorted, int[] buffer, int from, int to, int column, boolean ascending) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(sorted, buffer, from, middle, column, ascending);
+        sort(sorted, buffer, middle, to, column, ascending);
+        if (compareRows(sorted[middle - 1], sorted[middle], column, ascending) <= 0) {
+            return;
+        }
+        System.arraycopy(sorted, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        int next = from;
+        while (left < middle && right < to) {
+            sorted[next++] = compareRows(buffer[left], buffer[right], column, ascending) <= 0 ? buffer[left++] : buffer[right++];
+        }
+        // The rest of the right half is already in place
+        System.arraycopy(buffer, left, sorted, next, middle - left);
+    }
+
+    /**
+     * Compares two rows on the values of a column.
+     *
+     * @param x the first row number.
+     * @param y the second row number.
+     * @param column the index of the column.
+     * @param ascending true for ascending order, false for descending.
+     * @return a value less than, equal to or greater than 0 when row x comes before, at the same place as or after row y.
+     */
+    private int compareRows(int x, int y, int column, boolean ascending) {
+        int order = compareValues(value(genes[x], column), value(genes[y], column));
+        return ascending ? order : -order;
+    }
+
+    /**
+     * Returns the value of a column for a gene.
+     *
+     * @param gene the Gene to read.
+     * @param column the index of the column.
+     * @return the String value of the column.
+     */
+    private static String value(Gene gene, int column) {
+        switch (column) {
+            case 0:
+                return gene.getTaxID();
+            case 1:
+                return gene.getGeneID();
+            case 2:
+                return gene.getAccessionVersion();
+            default:
+                return gene.getProductName();
+        }
+    }
+
+    /**
+     * Checks if one of the columns of a gene contains a text, ignoring case, without creating new Strings.
+     *
+     * @param gene the Gene to check.
+     * @param text the text to search for.
+     * @return true when the text is empty or found in one of the columns.
+     */
+    private static boolean matches(Gene gene, String text) {
+        if (text.isEmpty()) {
+            return true;
+        }
+        for (int column = 0; column < COLUMNS.length; column++) {
+            String value = value(gene, column);
+            for (int i = 0; i + text.length() <= value.length(); i++) {
+                if (value.regionMatches(true, i, text, 0, text.length())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares two values in a total order: all values that are numbers come first, ordered numerically on their length and then their digits, followed by all other text ordered lexicographically ignoring case.
+     *
+     * @param a the first value.
+     * @param b the second value.
+     * @return a value less than, equal to or greater than 0 when a is less than, equal to or greater than b.
+     */
+    private static int compareValues(String a, String b) {
+        boolean numberA = isNumber(a);
+        boolean numberB = isNumber(b);
+        if (numberA != numberB) {
+            return numberA ? -1 : 1;
+        }
+        if (numberA) {
+            return a.length() != b.length() ? Integer.compare(a.length(), b.length()) : a.compareTo(b);
+        }
+        return a.compareToIgnoreCase(b);
+    }
+
+    /**
+     * Checks if a value only consists of digits.
+     *
+     * @param value the String to check.
+     * @return true when the value is a non-empty sequence of digits.
+     */
+    private static boolean isNumber(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return !value.isEmpty();
+    }
+
+}
@@ -0,0 +1,156 @@
+package intercomp;
+
+import java.util.Arrays;
+
+/**
+ * Set of int values with open addressing, without boxing the values.
+ *
+ * @author Alexander
+ */
+public final class IntSet {
+
+    private static final int FREE = 0;
+
+    private int[] values;
+    private int size;
+    private boolean containsFree;
+
+    /**
+     * Constructor for an empty set.
+     */
+    public IntSet() {
+        this(16);
+    }
+
+    /**
+     * Constructor for an empty set that can hold a number of values before it has to grow.
+     *
+     * @param expected the expected number of values.
+     */
+    public IntSet(int expected) {
+        int capacity = 16;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        values = new int[capacity];
+    }
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value the value to add.
+     * @return true when the value was not in the set yet.
+     */
+    public boolean add(int value) {
+        if (value == FREE) {
+            if (containsFree) {
+                return false;
+            }
+            containsFree = true;
+            size++;
+            return true;
+        }
+        int mask = values.length - 1;
+        int slot = mix(value) & mask;
+        while (values[slot] != FREE) {
+            if (values[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        values[slot] = value;
+        if (++size * 2 > values.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a value is in the set.
+     *
+     * @param value the value to look up.
+     * @return true when the value is in the set.
+     */
+    public boolean contains(int value) {
+        if (value == FREE) {
+            return containsFree;
+        }
+        int mask = values.length - 1;
+        int slot = mix(value) & mask;
+        while (values[slot] != FREE) {
+            if (values[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of values in the set.
+     *
+     * @return the size of the set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the set has no values.
+     *
+     * @return true when the set is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns all values in the set in ascending order.
+     *
+     * @return a new sorted array with the values.
+     */
+    public int[] toSortedArray() {
+        int[] sorted = new int[size];
+        int n = 0;
+        if (containsFree) {
+            sorted[n++] = FREE;
+        }
+        for (int value : values) {
+            if (value != FREE) {
+                sorted[n++] = value;
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Doubles the capacity and adds all values again.
+     */
+    private void grow() {
+        int[] old = values;
+        values = new int[old.length * 2];
+        int mask = values.length - 1;
+        for (int value : old) {
+            if (value != FREE) {
+                int slot = mix(value) & mask;
+                while (values[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                values[slot] = value;
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of a value so consecutive values do not end up in consecutive slots.
+     *
+     * @param value the value to hash.
+     * @return the hash of the value.
+     */
+    private static int mix(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
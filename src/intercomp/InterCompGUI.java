@@ -7,14 +7,25 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFileChooser;
+import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.JPopupMenu;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 /**
  * Graphical user interface for comparing interactions in a file.
+ * <p>
+ * The recently opened files and the last comparison are remembered in a Session. On startup the window is shown at once while the last file is loaded on a background thread; a quick scan shows the types and their number of rows first, so the types can be chosen while the interactions are loaded, then Compare can be used, the last comparison is restored, and the summary text follows last.
  *
  * @author Alexander
  */
@@ -24,15 +35,34 @@ public class InterCompGUI extends javax.swing.JFrame {
     private InteractionsFile file;
     private InteractionComperator comparator;
     private boolean endingSetup = true;
+    private final Session session = new Session();
+    private SwingWorker<InteractionsFile, Stage> loader;
+    private SwingWorker<Comparison, Void> compareWorker;
+    private final Timer compareTimer = new Timer(COMPARE_DELAY, e -> startCompare());
+
+    /**
+     * The number of milliseconds the selected types should stay the same before they are compared automatically.
+     */
+    private static final int COMPARE_DELAY = 300;
+
+    /**
+     * The parts of a file that are shown while it is loaded in the background, in the order they become available.
+     */
+    private enum Stage {
+        SCAN, TYPES, GENE_SETS, TEXT
+    }
 
     /**
      * Creates new application instance InterCompGUI.
      * <p>
-     * Initializes all the components for the application. Adds a listener to the path text field for checking its contents.
+     * Initializes all the components for the application. Adds a listener to the path text field for checking its contents and a menu with the recently opened files. Starts loading the last opened file, if there is one.
      */
     public InterCompGUI() {
         initComponents();
+        compareTimer.setRepeats(false);
         addPathListener();
+        addRecentMenu();
+        restoreSession();
     }
 
     /**
@@ -53,8 +83,11 @@ public class InterCompGUI extends javax.swing.JFrame {
         comboIntRight = new javax.swing.JComboBox<>();
         buttonExGenes = new javax.swing.JButton();
         buttonExPubMed = new javax.swing.JButton();
+        buttonExRows = new javax.swing.JButton();
         panelVenn = new javax.swing.JPanel();
         buttonCompare = new javax.swing.JButton();
+        buttonBrowseGenes = new javax.swing.JButton();
+        comboSide = new javax.swing.JComboBox<>();
 
         setDefaultCloseOperation(javax.swing.WindowConstants.EXIT_ON_CLOSE);
         setTitle("Interactions Comperator");
@@ -89,8 +122,18 @@ public class InterCompGUI extends javax.swing.JFrame {
         labelInteraction.setEnabled(false);
 
         comboIntLeft.setEnabled(false);
+        comboIntLeft.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                comboIntLeftActionPerformed(evt);
+            }
+        });
 
         comboIntRight.setEnabled(false);
+        comboIntRight.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                comboIntRightActionPerformed(evt);
+            }
+        });
 
         buttonExGenes.setText("Export Genes");
         buttonExGenes.setEnabled(false);
@@ -108,6 +151,15 @@ public class InterCompGUI extends javax.swing.JFrame {
             }
         });
 
+        buttonExRows.setText("Export Rows");
+        buttonExRows.setToolTipText("Export the original lines of the interactions of the genes in the intersection");
+        buttonExRows.setEnabled(false);
+        buttonExRows.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                buttonExRowsActionPerformed(evt);
+            }
+        });
+
         panelVenn.setBorder(javax.swing.BorderFactory.createEtchedBorder());
         panelVenn.setEnabled(false);
 
@@ -130,6 +182,24 @@ public class InterCompGUI extends javax.swing.JFrame {
             }
         });
 
+        buttonBrowseGenes.setText("Browse Genes");
+        buttonBrowseGenes.setEnabled(false);
+        buttonBrowseGenes.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                buttonBrowseGenesActionPerformed(evt);
+            }
+        });
+
+        comboSide.setModel(new javax.swing.DefaultComboBoxModel<>(new String[] { "Gene A", "Gene B", "Either gene" }));
+        comboSide.setSelectedIndex(1);
+        comboSide.setToolTipText("Which gene of the interactions to compare");
+        comboSide.setEnabled(false);
+        comboSide.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                comboSideActionPerformed(evt);
+            }
+        });
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(getContentPane());
         getContentPane().setLayout(layout);
         layout.setHorizontalGroup(
@@ -156,6 +226,9 @@ public class InterCompGUI extends javax.swing.JFrame {
                         .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                             .addGroup(layout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                                 .addComponent(buttonExPubMed, javax.swing.GroupLayout.Alignment.TRAILING)
+                                .addComponent(buttonExRows, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.PREFERRED_SIZE, 117, javax.swing.GroupLayout.PREFERRED_SIZE)
+                                .addComponent(buttonBrowseGenes, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.PREFERRED_SIZE, 117, javax.swing.GroupLayout.PREFERRED_SIZE)
+                                .addComponent(comboSide, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.PREFERRED_SIZE, 117, javax.swing.GroupLayout.PREFERRED_SIZE)
                                 .addComponent(buttonExGenes, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.PREFERRED_SIZE, 117, javax.swing.GroupLayout.PREFERRED_SIZE))
                             .addComponent(buttonCompare, javax.swing.GroupLayout.Alignment.TRAILING, javax.swing.GroupLayout.PREFERRED_SIZE, 117, javax.swing.GroupLayout.PREFERRED_SIZE))))
                 .addContainerGap())
@@ -189,10 +262,16 @@ public class InterCompGUI extends javax.swing.JFrame {
                     .addGroup(layout.createSequentialGroup()
                         .addGap(44, 44, 44)
                         .addComponent(buttonCompare)
-                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, 138, Short.MAX_VALUE)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(comboSide, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED, 46, Short.MAX_VALUE)
+                        .addComponent(buttonBrowseGenes)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                         .addComponent(buttonExGenes)
                         .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                         .addComponent(buttonExPubMed)
+                        .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                        .addComponent(buttonExRows)
                         .addGap(47, 47, 47))))
         );
 
@@ -217,25 +296,14 @@ public class InterCompGUI extends javax.swing.JFrame {
     /**
      * Called when the open button is pressed in the GUI.
      * <p>
-     * Reads the path specified in the path text field. Creates a new InteractionsFile instance for use in the application. Unlocks multiple fields in the program to work with the file.
+     * Reads the path specified in the path text field and loads a new InteractionsFile instance for use in the application in the background. Unlocks multiple fields in the program to work with the file when its types are loaded.
      *
      * @param evt The ActionEvent created when the open button was pressed.
      */
     private void buttonOpenActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_buttonOpenActionPerformed
         String path = fieldPath.getText();
         if (!path.equals("")) {
-            try {
-                file = new InteractionsFile(path);
-                updateFields();
-            } catch (FileNotFoundException e) {
-                JOptionPane.showMessageDialog(null, "Specified file not found", "Error", 0);
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(null, "There was a problem reading the file", "Error", 0);
-            } catch (IndexOutOfBoundsException e) {
-                JOptionPane.showMessageDialog(null, "The specified file has not the correct format", "Error", 0);
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(null, "Unreported error occured: " + e.getMessage(), "Error", 0);
-            }
+            loadFile(path, false);
         } else {
             JOptionPane.showMessageDialog(null, "No path specified!", "Error", 2);
         }
@@ -244,25 +312,62 @@ public class InterCompGUI extends javax.swing.JFrame {
     /**
      * Called when the compare button is pressed in the GUI.
      * <p>
-     * Checks if it is the first time that a compare action is performed. If it is the first time, a new InteractionComparator instance is created with the current options selected in the GUI. The InteractionsComperator compares the data and displays the data in a Venn-diagram made in a JPanel. When it is not the first time, it will update the contents of the current InteractionComparator, compare the new data and draw a new Venn-diagram accordingly.
+     * Compares the selected types at once, cancelling a comparison that is still running and any pending automatic comparison.
      *
      * @param evt The ActionEvent created when the compare button was pressed.
      */
     private void buttonCompareActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_buttonCompareActionPerformed
-        if (endingSetup) {
-            comparator = new InteractionComperator(((String) comboIntLeft.getSelectedItem()), ((String) comboIntRight.getSelectedItem()), file.getInteractions());
-            buttonExGenes.setEnabled(true);
-            buttonExPubMed.setEnabled(true);
-            endingSetup = false;
-            drawVennDiagram();
-        } else {
-            comparator.setTypeA(((String) comboIntLeft.getSelectedItem()));
-            comparator.setTypeB(((String) comboIntRight.getSelectedItem()));
-            comparator.setInteractions(file.getInteractions());
-            comparator.compare();
+        compareTimer.stop();
+        startCompare();
+    }//GEN-LAST:event_buttonCompareActionPerformed
+
+    /**
+     * Called when another first type is selected in the GUI.
+     * <p>
+     * After the first comparison, the types are compared again automatically when the selection has not changed for COMPARE_DELAY milliseconds.
+     *
+     * @param evt The ActionEvent created when the type was selected.
+     */
+    private void comboIntLeftActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_comboIntLeftActionPerformed
+        scheduleCompare();
+    }//GEN-LAST:event_comboIntLeftActionPerformed
+
+    /**
+     * Called when another second type is selected in the GUI.
+     * <p>
+     * After the first comparison, the types are compared again automatically when the selection has not changed for COMPARE_DELAY milliseconds.
+     *
+     * @param evt The ActionEvent created when the type was selected.
+     */
+    private void comboIntRightActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_comboIntRightActionPerformed
+        scheduleCompare();
+    }//GEN-LAST:event_comboIntRightActionPerformed
+
+    /**
+     * Called when the browse genes button is pressed in the GUI.
+     * <p>
+     * Opens a new window with a table of the genes in the intersection of the current comparison. The table only reads the rows that are visible, so large intersections can be browsed, sorted and searched without exporting them first.
+     *
+     * @param evt The ActionEvent created when the browse genes button was pressed.
+     */
+    private void buttonBrowseGenesActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_buttonBrowseGenesActionPerformed
+        new ResultBrowser(comparator.getTypeA(), comparator.getTypeB(), comparator.getGenesIntersection()).setVisible(true);
+    }//GEN-LAST:event_buttonBrowseGenesActionPerformed
+
+    /**
+     * Called when another side is selected in the GUI.
+     * <p>
+     * When a comparison was made, the comparator switches to the sets of the selected side, which were made during the same compare, and the Venn-diagram is drawn again. While a comparison is running or scheduled, the selected side is applied when it is ready.
+     *
+     * @param evt The ActionEvent created when the side was selected.
+     */
+    private void comboSideActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_comboSideActionPerformed
+        if (comparator != null && compareWorker == null && !compareTimer.isRunning()) {
+            comparator.setSide(selectedSide());
             drawVennDiagram();
+            session.setComparison(comparator.getTypeA(), comparator.getTypeB(), comparator.getSide());
         }
-    }//GEN-LAST:event_buttonCompareActionPerformed
+    }//GEN-LAST:event_comboSideActionPerformed
 
     /**
      * Called when the export genes button is pressed in the GUI.
@@ -343,6 +448,45 @@ public class InterCompGUI extends javax.swing.JFrame {
         }
     }//GEN-LAST:event_buttonExPubMedActionPerformed
 
+    /**
+     * Called when the export rows button is pressed in the GUI.
+     * <p>
+     * Gives the user an export/save dialog to select a location to save the original lines of the interactions of the genes in the intersection. Checks if the path is correct, if the file already exists gives the user a confirm dialog to confirm that the file will be overwritten. Calls the export rows function of the file, which copies the lines from the interactions file without formatting them. Has exception handling and informs the user by message dialog if something is wrong.
+     *
+     * @param evt The ActionEvent created when the export rows button was pressed.
+     */
+    private void buttonExRowsActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_buttonExRowsActionPerformed
+        try {
+            String path = browseFile(3);
+            if (!path.endsWith(".txt")) {
+                path += ".txt";
+            }
+            File exportFile = new File(path);
+            if (path != null & !exportFile.exists() & !exportFile.isDirectory()) {
+                file.exportRows(comparator.getComparison(), path);
+                JOptionPane.showMessageDialog(null, "Successfully exported all interactions!", "Success", 1);
+            } else if (exportFile.exists() & !exportFile.isDirectory()) {
+                int reply = JOptionPane.showConfirmDialog(null, String.format("Are you sure you want to overwrite '%s' with interactions?", exportFile.getName()), "Warning", 0);
+                if (reply == JOptionPane.YES_OPTION) {
+                    file.exportRows(comparator.getComparison(), path);
+                    JOptionPane.showMessageDialog(null, "Successfully exported all interactions!", "Success", 1);
+                }
+            } else {
+                JOptionPane.showMessageDialog(null, "Incorrect type of file to save!", "Error", 0);
+            }
+        } catch (NullPointerException e) {
+            // Cancel or closing of dialog
+        } catch (FileNotFoundException e) {
+            JOptionPane.showMessageDialog(null, "Cannot find location to save to!", "Error", 0);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "There was a problem saving the file", "Error", 0);
+        } catch (NullExportException e) {
+            JOptionPane.showMessageDialog(null, e.getMessage(), "Error", 0);
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(null, "Unreported error occured: " + e.getMessage(), "Error", 0);
+        }
+    }//GEN-LAST:event_buttonExRowsActionPerformed
+
     /**
      * The main function of the application.
      * <p>
@@ -414,10 +558,188 @@ public class InterCompGUI extends javax.swing.JFrame {
         });
     }
 
+    /**
+     * Adds a popup menu with the recently opened files to the path text field.
+     * <p>
+     * The menu is filled when it is opened, so it always shows the files of the current session. Choosing a file puts its path in the text field and opens it. The last item chooses whether duplicate interactions are collapsed in the files that are opened next; the choice is remembered in the Session.
+     */
+    private void addRecentMenu() {
+        final JPopupMenu menu = new JPopupMenu();
+        menu.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                menu.removeAll();
+                for (final String path : session.getRecentFiles()) {
+                    JMenuItem item = new JMenuItem(path);
+                    item.addActionListener(evt -> {
+                        fieldPath.setText(path);
+                        loadFile(path, false);
+                    });
+                    menu.add(item);
+                }
+                if (menu.getComponentCount() == 0) {
+                    JMenuItem item = new JMenuItem("No recent files");
+                    item.setEnabled(false);
+                    menu.add(item);
+                }
+                menu.addSeparator();
+                final JCheckBoxMenuItem collapse = new JCheckBoxMenuItem("Collapse duplicate interactions", session.isCollapse());
+                collapse.addActionListener(evt -> session.setCollapse(collapse.isSelected()));
+                menu.add(collapse);
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+            }
+
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {
+            }
+        });
+        fieldPath.setComponentPopupMenu(menu);
+    }
+
+    /**
+     * Starts loading the last opened file and restoring the last comparison, when the file still exists.
+     */
+    private void restoreSession() {
+        String path = session.getLastFile();
+        if (path != null && new File(path).isFile()) {
+            fieldPath.setText(path);
+            loadFile(path, true);
+        }
+    }
+
+    /**
+     * Loads an interactions file on a background thread and shows its parts as soon as they are available.
+     * <p>
+     * The types found by a TypeScan are shown first, with the types of the last comparison selected, so the user can choose the types while the interactions are loaded. Compare can be used when the interactions are loaded; the combo boxes are only filled again when the loaded types differ from the scan, so a selection made during loading is kept. When restoring a session, the last comparison is made next and drawn in the Venn-diagram. The summary text is shown last. A file that is still loading is cancelled when another file is opened, the comparison of the previous file is cancelled and forgotten, and the previous file is closed so its run files are deleted.
+     *
+     * @param path the absolute path to the file to load.
+     * @param restore true to also restore the last comparison of the session.
+     */
+    private void loadFile(final String path, final boolean restore) {
+        if (loader != null) {
+            loader.cancel(true);
+        }
+        clearComparison();
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+        final String typeA = session.getTypeA();
+        final String typeB = session.getTypeB();
+        final InteractionComperator.Side side = session.getSide();
+        final boolean collapse = session.isCollapse();
+        buttonOpen.setEnabled(false);
+        textSummary.setText("Loading " + path + "...");
+        loader = new SwingWorker<InteractionsFile, Stage>() {
+            private TypeScan scan;
+            private volatile InteractionsFile loaded;
+            private InteractionComperator restored;
+            private String stats;
+
+            @Override
+            protected InteractionsFile doInBackground() throws Exception {
+                scan = new TypeScan(path);
+                publish(Stage.SCAN);
+                loaded = new InteractionsFile(path, InteractionsFile.exceedsMemory(path), collapse);
+                if (isCancelled()) {
+                    // Another file was opened while this file was loading
+                    loaded.close();
+                    return loaded;
+                }
+                publish(Stage.TYPES);
+                if (restore && loaded.getTypes().contains(typeA) && loaded.getTypes().contains(typeB) && !isCancelled()) {
+                    restored = new InteractionComperator(loaded.compare(typeA, typeB, side));
+                    publish(Stage.GENE_SETS);
+                }
+                stats = loaded.getStatsText();
+                publish(Stage.TEXT);
+                return loaded;
+            }
+
+            @Override
+            protected void process(List<Stage> stages) {
+                if (isCancelled() || loader != this) {
+                    return;
+                }
+                for (Stage stage : stages) {
+                    switch (stage) {
+                        case SCAN:
+                            file = null;
+                            clearComparison();
+                            showTypes(scan.getTypes(), typeA, typeB);
+                            textSummary.setText(scan.getStatsText() + "\n\nLoading interactions...");
+                            break;
+                        case TYPES:
+                            file = loaded;
+                            if (!loaded.getTypes().equals(scan.getTypes())) {
+                                showTypes(loaded.getTypes(), typeA, typeB);
+                            }
+                            buttonCompare.setEnabled(true);
+                            break;
+                        case GENE_SETS:
+                            if (!typeA.equals(comboIntLeft.getSelectedItem()) || !typeB.equals(comboIntRight.getSelectedItem())) {
+                                // Other types were chosen while loading; they are compared with Compare
+                                break;
+                            }
+                            comparator = restored;
+                            comboSide.setSelectedIndex(side.ordinal());
+                            buttonExGenes.setEnabled(true);
+                            buttonExPubMed.setEnabled(true);
+                            buttonExRows.setEnabled(true);
+                            buttonBrowseGenes.setEnabled(true);
+                            endingSetup = false;
+                            drawVennDiagram();
+                            break;
+                        default:
+                            textSummary.setText(stats);
+                    }
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (loader != this || isCancelled()) {
+                    if (loaded != null && loaded != file) {
+                        loaded.close();
+                    }
+                }
+                if (loader != this) {
+                    return;
+                }
+                buttonOpen.setEnabled(!fieldPath.getText().equals(""));
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    get();
+                    session.addRecentFile(path);
+                } catch (ExecutionException e) {
+                    textSummary.setText("");
+                    Throwable cause = e.getCause();
+                    if (cause instanceof FileNotFoundException) {
+                        JOptionPane.showMessageDialog(null, "Specified file not found", "Error", 0);
+                    } else if (cause instanceof IOException) {
+                        JOptionPane.showMessageDialog(null, "There was a problem reading the file", "Error", 0);
+                    } else if (cause instanceof IndexOutOfBoundsException) {
+                        JOptionPane.showMessageDialog(null, "The specified file has not the correct format", "Error", 0);
+                    } else {
+                        JOptionPane.showMessageDialog(null, "Unreported error occured: " + cause.getMessage(), "Error", 0);
+                    }
+                } catch (InterruptedException e) {
+                    // The loading was stopped
+                }
+            }
+        };
+        loader.execute();
+    }
+
     /**
      * Pops a dialog in front of the user to select a path to a file to open or export to.
      *
-     * @param function An integer to select what kind of file chooser to use. 0 is the open dialog, 1 is the export genes dialog and 2 is the export PubMed identifier dialog.
+     * @param function An integer to select what kind of file chooser to use. 0 is the open dialog, 1 is the export genes dialog, 2 is the export PubMed identifier dialog and 3 is the export interactions dialog.
      * @return A String which represents an absolute path to a file location, no matter if it exists or not.
      */
     private String browseFile(int function) {
@@ -435,6 +757,14 @@ public class InterCompGUI extends javax.swing.JFrame {
             fileChooser.setSelectedFile(new File("Genes"));
             reply = fileChooser.showDialog(this, "Export");
         }
+        if (function == 3) {
+            fileChooser.setDialogTitle("Choose a location for exporting interactions");
+            fileChooser.setFileFilter(new FileNameExtensionFilter("Tab-delimited text file (*.txt)", "txt"));
+            fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+            fileChooser.setAcceptAllFileFilterUsed(false);
+            fileChooser.setSelectedFile(new File("Interactions"));
+            reply = fileChooser.showDialog(this, "Export");
+        }
         if (function == 2) {
             fileChooser.setDialogTitle("Choose a location for exporting PubMed identifiers");
             fileChooser.setFileFilter(new FileNameExtensionFilter("Line separated identifiers (*.txt)", "txt"));
@@ -452,30 +782,191 @@ public class InterCompGUI extends javax.swing.JFrame {
     }
 
     /**
-     * Adds sorted interaction types to the combo boxes and enables multiple GUI components that need to be enabled after opening a file.
+     * Shows the types of a file in the combo boxes and selects the types of the last comparison when the file has both.
+     *
+     * @param types the types of interactions in the file.
+     * @param typeA the first type of the last comparison.
+     * @param typeB the second type of the last comparison.
      */
-    private void updateFields() {
-        List<String> types = new ArrayList<>(file.getTypes());
+    private void showTypes(Set<String> types, String typeA, String typeB) {
+        updateFields(types);
+        if (types.contains(typeA) && types.contains(typeB)) {
+            comboIntLeft.setSelectedItem(typeA);
+            comboIntRight.setSelectedItem(typeB);
+        }
+    }
+
+    /**
+     * Replaces the interaction types in the combo boxes by the sorted types of the file and enables multiple GUI components that need to be enabled after opening a file.
+     * <p>
+     * The compare button is only enabled when the interactions of the file are loaded.
+     *
+     * @param fileTypes the types of interactions in the file.
+     */
+    private void updateFields(Set<String> fileTypes) {
+        List<String> types = new ArrayList<>(fileTypes);
         types.sort(null);
+        comboIntLeft.removeAllItems();
+        comboIntRight.removeAllItems();
         for (String s : types) {
             comboIntLeft.addItem(s);
             comboIntRight.addItem(s);
         }
-        textSummary.setText(file.getStatsText());
         textSummary.setEnabled(true);
         scrollSummary.setEnabled(true);
         labelInteraction.setEnabled(true);
         comboIntLeft.setEnabled(true);
         comboIntRight.setEnabled(true);
-        buttonCompare.setEnabled(true);
+        comboSide.setEnabled(true);
+        buttonCompare.setEnabled(file != null);
         panelVenn.setEnabled(true);
         panelVenn.setBackground(Color.WHITE);
     }
 
     /**
-     * Clears the current Venn-diagram and draws a new diagram based on the information in InteractionComperator 'comparator'.
+     * Returns the side of the interactions selected in the GUI.
+     *
+     * @return the Side matching the selected item of the side combo box.
+     */
+    private InteractionComperator.Side selectedSide() {
+        return InteractionComperator.Side.values()[comboSide.getSelectedIndex()];
+    }
+
+    /**
+     * Restarts the timer for an automatic comparison, when the types have been compared before.
+     * <p>
+     * Every new selection restarts the timer, so quickly changing the types only compares the last selection. A comparison of the previous selection that is still running is cancelled at once, and the components that use the last comparison are disabled until the new selection is compared, so the types that are shown are never exported with the genes of other types.
+     */
+    private void scheduleCompare() {
+        if (!endingSetup && file != null) {
+            if (compareWorker != null) {
+                compareWorker.cancel(true);
+                compareWorker = null;
+            }
+            setComparing(true);
+            compareTimer.restart();
+        }
+    }
+
+    /**
+     * Compares the selected types on a background thread.
+     * <p>
+     * Draws the overlap estimated from the sketches of the types at once and cancels a comparison that is still running; its thread is interrupted and stops scanning the interactions. When the exact comparison is ready and no newer comparison was started, it is published to the comparator (creating the comparator the first time) and the Venn-diagram is drawn with the exact counts. Only the latest comparison is ever drawn.
+     */
+    private void startCompare() {
+        final String typeA = (String) comboIntLeft.getSelectedItem();
+        final String typeB = (String) comboIntRight.getSelectedItem();
+        if (file == null || typeA == null || typeB == null) {
+            return;
+        }
+        if (compareWorker != null) {
+            compareWorker.cancel(true);
+        }
+        final InteractionComperator.Side side = selectedSide();
+        final InteractionsFile compared = file;
+        drawVennEstimate(typeA, typeB, file.estimateOverlap(typeA, typeB, side));
+        setComparing(true);
+        compareWorker = new SwingWorker<Comparison, Void>() {
+            @Override
+            protected Comparison doInBackground() {
+                return compared.compare(typeA, typeB, side);
+            }
+
+            @Override
+            protected void done() {
+                if (compareWorker != this || isCancelled()) {
+                    // A newer comparison was started and will update the GUI
+                    return;
+                }
+                try {
+                    // The side may have been changed while comparing
+                    Comparison comparison = get().withSide(selectedSide());
+                    if (comparator == null) {
+                        comparator = new InteractionComperator(comparison);
+                    } else {
+                        comparator.setComparison(comparison);
+                    }
+                    endingSetup = false;
+                    drawVennDiagram();
+                    session.setComparison(typeA, typeB, comparison.getSide());
+                } catch (InterruptedException | ExecutionException e) {
+                    JOptionPane.showMessageDialog(null, "Unreported error occured: " + e.getMessage(), "Error", 0);
+                }
+                compareWorker = null;
+                setComparing(false);
+            }
+        };
+        compareWorker.execute();
+    }
+
+    /**
+     * Forgets the comparison of the current file, before another file is opened.
+     * <p>
+     * A running comparison is cancelled, the comparator is cleared and the components that use it are disabled until the new file is compared, so nothing of the old file can be exported from or read in the new one.
+     */
+    private void clearComparison() {
+        compareTimer.stop();
+        if (compareWorker != null) {
+            compareWorker.cancel(true);
+            compareWorker = null;
+        }
+        comparator = null;
+        endingSetup = true;
+        setComparing(false);
+    }
+
+    /**
+     * Enables or disables the components that use the last comparison while an exact comparison runs in the background.
+     *
+     * @param comparing true when a comparison is running.
+     */
+    private void setComparing(boolean comparing) {
+        buttonExGenes.setEnabled(!comparing && !endingSetup);
+        buttonExPubMed.setEnabled(!comparing && !endingSetup);
+        buttonExRows.setEnabled(!comparing && !endingSetup);
+        buttonBrowseGenes.setEnabled(!comparing && !endingSetup);
+    }
+
+    /**
+     * Clears the current Venn-diagram and draws a new diagram based on the last Comparison of InteractionComperator 'comparator'.
      */
     private void drawVennDiagram() {
+        Comparison comparison = comparator.getComparison();
+        String countA = Integer.toString(comparison.getGenesA().size() - comparison.getGenesIntersection().size());
+        String countIntersection = Integer.toString(comparison.getGenesIntersection().size());
+        String countB = Integer.toString(comparison.getGenesB().size() - comparison.getGenesIntersection().size());
+        drawVennDiagram(comparison.getTypeA(), comparison.getTypeB(), countA, countIntersection, countB, null);
+    }
+
+    /**
+     * Clears the current Venn-diagram and draws a new diagram with the overlap of two types estimated from their sketches.
+     * <p>
+     * The estimated counts are prefixed with '~' and the Jaccard similarity and the error of the intersection are shown below the diagram, until the exact counts replace them.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param estimate the TypeSketch.Estimate of the overlap of both types.
+     */
+    private void drawVennEstimate(String typeA, String typeB, TypeSketch.Estimate estimate) {
+        String prefix = estimate.isExact() ? "" : "~";
+        String countA = prefix + Math.max(0, estimate.getSizeA() - estimate.getIntersection());
+        String countIntersection = prefix + estimate.getIntersection();
+        String countB = prefix + Math.max(0, estimate.getSizeB() - estimate.getIntersection());
+        String note = String.format("Estimate: Jaccard %.3f \u00b1 %.3f, intersection \u00b1 %.0f genes; comparing...", estimate.getJaccard(), estimate.getJaccardError(), estimate.getIntersectionError());
+        drawVennDiagram(typeA, typeB, countA, countIntersection, countB, note);
+    }
+
+    /**
+     * Clears the current Venn-diagram and draws a new diagram with two types and the counts of their genes.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param countA the number of genes only in the first type.
+     * @param countIntersection the number of genes in both types.
+     * @param countB the number of genes only in the second type.
+     * @param note a line of text to show below the diagram, or null.
+     */
+    private void drawVennDiagram(String typeA, String typeB, String countA, String countIntersection, String countB, String note) {
         Graphics paper = panelVenn.getGraphics();
         panelVenn.removeAll();
         paper.setColor(Color.WHITE);
@@ -484,30 +975,32 @@ public class InterCompGUI extends javax.swing.JFrame {
         int xUnit = panelVenn.getWidth() / 20;
         int yUnit = panelVenn.getHeight() / 20;
 
-        String countA = Integer.toString(comparator.getGenesA().size() - comparator.getGenesIntersection().size());
-        String countIntersection = Integer.toString(comparator.getGenesIntersection().size());
-        String countB = Integer.toString(comparator.getGenesB().size() - comparator.getGenesIntersection().size());
-
         paper.setColor(Color.BLUE);
         paper.drawOval(xUnit * 2, panelVenn.getHeight() / 4, panelVenn.getWidth() / 2, panelVenn.getHeight() / 2);
         paper.drawOval(xUnit * 8, panelVenn.getHeight() / 4, panelVenn.getWidth() / 2, panelVenn.getHeight() / 2);
 
         paper.setColor(Color.BLACK);
-        paper.drawString(comparator.getTypeA(), xUnit * 5, yUnit * 4);
-        paper.drawString(comparator.getTypeB(), xUnit * 13, yUnit * 4);
+        paper.drawString(typeA, xUnit * 5, yUnit * 4);
+        paper.drawString(typeB, xUnit * 13, yUnit * 4);
         paper.drawString(countA, xUnit * 6, yUnit * 11);
         paper.drawString(countIntersection, xUnit * 10, yUnit * 11);
         paper.drawString(countB, xUnit * 14, yUnit * 11);
+        if (note != null) {
+            paper.drawString(note, xUnit, yUnit * 19);
+        }
     }
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JButton buttonBrowse;
+    private javax.swing.JButton buttonBrowseGenes;
     private javax.swing.JButton buttonCompare;
     private javax.swing.JButton buttonExGenes;
     private javax.swing.JButton buttonExPubMed;
+    private javax.swing.JButton buttonExRows;
     private javax.swing.JButton buttonOpen;
     private javax.swing.JComboBox<String> comboIntLeft;
     private javax.swing.JComboBox<String> comboIntRight;
+    private javax.swing.JComboBox<String> comboSide;
     private javax.swing.JTextField fieldPath;
     private javax.swing.JLabel labelFile;
     private javax.swing.JLabel labelInteraction;
@@ -1,5 +1,7 @@
 package intercomp;
 
+import java.util.Arrays;
+
 /**
  * Interaction class to describe an interaction between two genes.
  *
@@ -9,10 +11,15 @@ public class Interaction implements Comparable<Interaction> {
 
     private Gene geneA;
     private Gene geneB;
-    private String pubmedID;
+    private PubMedTable pubmedTable;
+    private int pubmedEntry;
     private String type;
     private String lastUpdate;
+    private long updated;
     private String geneRIF;
+    private int hash;
+    private long source = SourceRows.UNKNOWN;
+    private long[] mergedSources;
 
     /**
      * Constructor for creating a Interaction object with all internal fields.
@@ -25,12 +32,31 @@ public class Interaction implements Comparable<Interaction> {
      * @param geneRIF (small) text description of the interaction between the two genes.
      */
     public Interaction(Gene geneA, Gene geneB, String pubmedID, String type, String lastUpdate, String geneRIF) {
+        this(geneA, geneB, new PubMedTable(), -1, type, lastUpdate, geneRIF);
+        this.pubmedEntry = pubmedTable.add(pubmedID);
+    }
+
+    /**
+     * Constructor for a Interaction object with PubMed identifiers stored in a shared table.
+     *
+     * @param geneA the first Gene object involved with the interaction.
+     * @param geneB the second Gene object involved with the interaction.
+     * @param pubmedTable the PubMedTable with the PubMed identifiers of the interaction.
+     * @param pubmedEntry the number of the entry in the table with the PubMed identifiers of this interaction.
+     * @param type the type of interaction between the two genes.
+     * @param lastUpdate string representation of the last update timestamp.
+     * @param geneRIF (small) text description of the interaction between the two genes.
+     */
+    Interaction(Gene geneA, Gene geneB, PubMedTable pubmedTable, int pubmedEntry, String type, String lastUpdate, String geneRIF) {
         this.geneA = geneA;
         this.geneB = geneB;
-        this.pubmedID = pubmedID;
+        this.pubmedTable = pubmedTable;
+        this.pubmedEntry = pubmedEntry;
         this.type = type;
         this.lastUpdate = lastUpdate;
+        this.updated = TimelineIndex.parse(lastUpdate);
         this.geneRIF = geneRIF;
+        updateHash();
     }
 
     /**
@@ -53,11 +79,41 @@ public class Interaction implements Comparable<Interaction> {
 
     /**
      * Returns the PubMed identifier associated with the interaction.
+     * <p>
+     * The identifiers are stored as numbers; this creates a comma-separated String of them.
      *
      * @return the PubMed identifier linked to the interaction between the two genes.
      */
     public String getPubMedID() {
-        return pubmedID;
+        return pubmedTable.toString(pubmedEntry);
+    }
+
+    /**
+     * Returns the number of PubMed identifiers associated with the interaction.
+     *
+     * @return the number of PubMed identifiers linked to the interaction.
+     */
+    public int getPubMedCount() {
+        return pubmedTable.size(pubmedEntry);
+    }
+
+    /**
+     * Returns one of the PubMed identifiers associated with the interaction.
+     *
+     * @param index the index of the identifier, from 0 to getPubMedCount().
+     * @return the numeric PubMed identifier.
+     */
+    public int getPubMedID(int index) {
+        return pubmedTable.get(pubmedEntry, index);
+    }
+
+    /**
+     * Adds all PubMed identifiers associated with the interaction to a set, without creating any objects.
+     *
+     * @param identifiers the IntSet to add the identifiers to.
+     */
+    public void addPubMedIDs(IntSet identifiers) {
+        pubmedTable.addTo(pubmedEntry, identifiers);
     }
 
     /**
@@ -78,6 +134,15 @@ public class Interaction implements Comparable<Interaction> {
         return lastUpdate;
     }
 
+    /**
+     * Returns the last update timestamp of the information in this object as a number.
+     *
+     * @return the seconds since the epoch (UTC) of the last update, or TimelineIndex.UNKNOWN when the timestamp can not be parsed.
+     */
+    public long getUpdated() {
+        return updated;
+    }
+
     /**
      * Returns a geneRIF text describing the interaction (in short).
      *
@@ -94,6 +159,7 @@ public class Interaction implements Comparable<Interaction> {
      */
     public void setGeneA(Gene geneA) {
         this.geneA = geneA;
+        updateHash();
     }
 
     /**
@@ -103,6 +169,7 @@ public class Interaction implements Comparable<Interaction> {
      */
     public void setGeneB(Gene geneB) {
         this.geneB = geneB;
+        updateHash();
     }
 
     /**
@@ -111,7 +178,7 @@ public class Interaction implements Comparable<Interaction> {
      * @param pubmedID the PubMed identifier linked to the interaction between the two genes.
      */
     public void setPubMedID(String pubmedID) {
-        this.pubmedID = pubmedID;
+        this.pubmedEntry = pubmedTable.add(pubmedID);
     }
 
     /**
@@ -121,6 +188,7 @@ public class Interaction implements Comparable<Interaction> {
      */
     public void setType(String type) {
         this.type = type;
+        updateHash();
     }
 
     /**
@@ -130,6 +198,7 @@ public class Interaction implements Comparable<Interaction> {
      */
     public void setLastUpdate(String lastUpdate) {
         this.lastUpdate = lastUpdate;
+        this.updated = TimelineIndex.parse(lastUpdate);
     }
 
     /**
@@ -142,20 +211,98 @@ public class Interaction implements Comparable<Interaction> {
     }
 
     /**
-     * Compares two types from two interactions lexicographically.
+     * Sets the location of the row in the interactions file this interaction was read from.
+     *
+     * @param source the location of the row packed by SourceRows.pack.
+     */
+    void setSource(long source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns the number of rows in the interactions file this interaction was read from.
+     *
+     * @return the number of source rows; more than one when duplicates were merged, 0 when the rows are not known.
+     */
+    int getSourceCount() {
+        if (source == SourceRows.UNKNOWN) {
+            return 0;
+        }
+        return mergedSources == null ? 1 : 1 + mergedSources.length;
+    }
+
+    /**
+     * Returns the location of one of the rows this interaction was read from.
+     *
+     * @param n the number of the source row, from 0 to getSourceCount() - 1.
+     * @return the location of the row packed by SourceRows.pack.
+     */
+    long getSource(int n) {
+        return n == 0 ? source : mergedSources[n - 1];
+    }
+
+    /**
+     * Returns a copy of this interaction with its PubMed identifiers in another table.
+     * <p>
+     * The genes, type, update timestamp and geneRIF text are shared; the locations of the source rows are not copied, because the copy does not belong to one file.
+     *
+     * @param table the PubMedTable to store the PubMed identifiers of the copy in.
+     * @return the new Interaction.
+     */
+    Interaction copy(PubMedTable table) {
+        return new Interaction(geneA, geneB, table, table.addCopy(pubmedTable, pubmedEntry), type, lastUpdate, geneRIF);
+    }
+
+    /**
+     * Merges a duplicate interaction between the same two genes with the same type into this interaction.
+     * <p>
+     * The PubMed identifiers and the locations of the source rows of both interactions are collected in a Duplicates object, and are only linked to this interaction by endMerge, so merging many duplicates of one interaction writes one entry in its table. The latest of the two update timestamps is kept. The geneRIF text of this interaction is kept.
+     *
+     * @param other the Interaction with the same genes and type to merge into this one.
+     * @param duplicates the Duplicates of this interaction merged so far; a new Duplicates object for the first duplicate.
+     */
+    void merge(Interaction other, Duplicates duplicates) {
+        if (duplicates.isEmpty()) {
+            duplicates.add(this);
+        }
+        duplicates.add(other);
+        if (other.getUpdated() > updated) {
+            lastUpdate = other.getLastUpdate();
+            updated = other.getUpdated();
+        }
+    }
+
+    /**
+     * Links this interaction to the PubMed identifiers and source rows collected while merging its duplicates. The identifiers are added as a new entry in its table.
+     *
+     * @param duplicates the Duplicates that was passed to merge for every duplicate.
+     */
+    void endMerge(Duplicates duplicates) {
+        pubmedEntry = pubmedTable.add(duplicates.identifiers, duplicates.identifierCount);
+        if (source != SourceRows.UNKNOWN && duplicates.sourceCount > 1) {
+            mergedSources = Arrays.copyOfRange(duplicates.sources, 1, duplicates.sourceCount);
+        }
+    }
+
+    /**
+     * Compares two interactions on their type lexicographically, and interactions with the same type on the identifiers of their first and then their second gene, so the order is consistent with equals.
      *
      * @param other the Interaction to be compared.
-     * @return the value 0 if the type from the argument Interaction is equal to this gene identifier; a value less than 0 if this type is lexicographically less than the type of the Interaction in the argument; and a value greater than 0 if this type is lexicographically greater than the Interaction identifier from the argument.
+     * @return the value 0 if the argument Interaction has the same type and the same two genes as this Interaction; a value less than 0 if this type, or with the same type the gene identifiers, are lexicographically less than those of the Interaction in the argument; and a value greater than 0 otherwise.
      */
     @Override
     public int compareTo(Interaction other) {
-        return type.compareTo(other.getType());
+        int order = type.compareTo(other.getType());
+        if (order == 0) {
+            order = geneA.compareTo(other.getGeneA());
+        }
+        return order != 0 ? order : geneB.compareTo(other.getGeneB());
     }
 
     /**
      * Compares this Interaction to the specified object.
      * <p>
-     * The result is true if and only if the argument is not null and is a Interaction object that represents the same sequence of characters as this object.
+     * The result is true if and only if the argument is not null and is a Interaction object between the same two genes with the same type as this object. The PubMed identifiers, update timestamp and geneRIF text are not compared.
      *
      * @param other the object to compare this Interaction against
      * @return true if the given object represents a Interaction equivalent to this Interaction, false otherwise
@@ -163,7 +310,8 @@ public class Interaction implements Comparable<Interaction> {
     @Override
     public boolean equals(Object other) {
         if (other != null & other instanceof Interaction) {
-            return type.equals(((Interaction) other).getType());
+            Interaction interaction = (Interaction) other;
+            return hash == interaction.hash && type.equals(interaction.getType()) && geneA.equals(interaction.getGeneA()) && geneB.equals(interaction.getGeneB());
         }
         return false;
     }
@@ -171,13 +319,68 @@ public class Interaction implements Comparable<Interaction> {
     /**
      * Returns a hash code for this object.
      * <p>
-     * The hash code of this object is equal to the hash code of the encapsulated String type.
+     * The hash code of this object is combined from the hash codes of the type and the two genes. It is calculated when the type or a gene is set, not every time it is requested.
      *
      * @return a hash code value for this object.
      */
     @Override
     public int hashCode() {
-        return type.hashCode();
+        return hash;
+    }
+
+    /**
+     * Calculates the hash code from the type and the two genes.
+     */
+    private void updateHash() {
+        hash = (31 * type.hashCode() + geneA.hashCode()) * 31 + geneB.hashCode();
+    }
+
+    /**
+     * The PubMed identifiers, without duplicates, and the locations of the source rows of the interactions that are merged into one interaction.
+     * <p>
+     * Both grow by doubling while the duplicates are merged, so merging many duplicates takes linear time; endMerge links them to the interaction.
+     */
+    static final class Duplicates {
+
+        private final IntSet seen = new IntSet();
+        private int[] identifiers = new int[16];
+        private int identifierCount;
+        private long[] sources = new long[16];
+        private int sourceCount;
+        private boolean empty = true;
+
+        /**
+         * Adds the PubMed identifiers that were not added before and the source rows of an interaction.
+         *
+         * @param interaction the Interaction to add.
+         */
+        void add(Interaction interaction) {
+            empty = false;
+            for (int n = 0; n < interaction.getPubMedCount(); n++) {
+                int id = interaction.getPubMedID(n);
+                if (seen.add(id)) {
+                    if (identifierCount == identifiers.length) {
+                        identifiers = Arrays.copyOf(identifiers, identifierCount * 2);
+                    }
+                    identifiers[identifierCount++] = id;
+                }
+            }
+            for (int n = 0; n < interaction.getSourceCount(); n++) {
+                if (sourceCount == sources.length) {
+                    sources = Arrays.copyOf(sources, sourceCount * 2);
+                }
+                sources[sourceCount++] = interaction.getSource(n);
+            }
+        }
+
+        /**
+         * Returns whether no interaction was added yet.
+         *
+         * @return true when nothing was merged.
+         */
+        boolean isEmpty() {
+            return empty;
+        }
     }
 
 }
@@ -0,0 +1,95 @@
+package intercomp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class that merges interactions between the same two genes with the same type into one interaction while a file is read.
+ * <p>
+ * Genes and types get ordinals the first time they are seen, and every later interaction uses the same Gene object and type String. Each edge is looked up with an EdgeKey of the ordinals; a duplicate edge is merged into the first interaction of that edge. The PubMed identifiers and source rows of the duplicates are collected per edge and linked to the first interaction once, by finish, when the file is read.
+ *
+ * @author Alexander
+ */
+final class InteractionCollapser {
+
+    private final Map<Gene, Integer> geneOrdinals;
+    private final List<Gene> genes;
+    private final Map<String, Integer> typeOrdinals;
+    private final List<String> types;
+    private final Map<EdgeKey, Interaction> edges;
+    private final Map<EdgeKey, Interaction.Duplicates> duplicates;
+
+    /**
+     * Constructor for an empty collapser.
+     */
+    InteractionCollapser() {
+        geneOrdinals = new HashMap<>();
+        genes = new ArrayList<>();
+        typeOrdinals = new HashMap<>();
+        types = new ArrayList<>();
+        edges = new HashMap<>();
+        duplicates = new HashMap<>();
+    }
+
+    /**
+     * Adds an interaction, merging it into an earlier interaction of the same edge if there is one.
+     *
+     * @param interaction the Interaction to add.
+     * @return true when the interaction is the first of its edge and should be kept, false when it was merged.
+     */
+    boolean add(Interaction interaction) {
+        int a = geneOrdinal(interaction.getGeneA());
+        int b = geneOrdinal(interaction.getGeneB());
+        Integer type = typeOrdinals.get(interaction.getType());
+        if (type == null) {
+            type = types.size();
+            typeOrdinals.put(interaction.getType(), type);
+            types.add(interaction.getType());
+        }
+        interaction.setGeneA(genes.get(a));
+        interaction.setGeneB(genes.get(b));
+        interaction.setType(types.get(type));
+        EdgeKey key = new EdgeKey(a, b, type);
+        Interaction first = edges.get(key);
+        if (first == null) {
+            edges.put(key, interaction);
+            return true;
+        }
+        Interaction.Duplicates merged = duplicates.get(key);
+        if (merged == null) {
+            merged = new Interaction.Duplicates();
+            duplicates.put(key, merged);
+        }
+        first.merge(interaction, merged);
+        return false;
+    }
+
+    /**
+     * Links every merged interaction to the PubMed identifiers and source rows of all its duplicates. Must be called after the last interaction is added.
+     */
+    void finish() {
+        for (Map.Entry<EdgeKey, Interaction.Duplicates> edge : duplicates.entrySet()) {
+            edges.get(edge.getKey()).endMerge(edge.getValue());
+        }
+        duplicates.clear();
+    }
+
+    /**
+     * Returns the ordinal of a gene, adding the gene if it is new.
+     *
+     * @param gene the Gene to look up.
+     * @return the ordinal of the gene.
+     */
+    private int geneOrdinal(Gene gene) {
+        Integer ordinal = geneOrdinals.get(gene);
+        if (ordinal == null) {
+            ordinal = genes.size();
+            geneOrdinals.put(gene, ordinal);
+            genes.add(gene);
+        }
+        return ordinal;
+    }
+
+}
@@ -1,29 +1,46 @@
 package intercomp;
 
-import java.io.BufferedWriter;
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.util.HashSet;
+import java.io.Writer;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Class to compare sets of genes that belong to a interaction.
+ * <p>
+ * A gene belongs to a type of interaction through the first gene (side A), the second gene (side B) or either gene of an interaction of that type. The sets for all sides are made in one pass over the interactions, so the side that is compared can be changed without reading the interactions again.
+ * <p>
+ * Every compare publishes an immutable Comparison through an atomic reference. Readers get the last complete result without locking, and a result that was read stays valid while the comparator compares again.
  *
  * @author Alexander
  */
 public class InteractionComperator {
 
-    private String typeA;
-    private String typeB;
-    private List<Interaction> interactions;
+    /**
+     * The gene of an interaction that is compared.
+     */
+    public enum Side {
+        /**
+         * The first gene of an interaction, from the first taxonomy identifier.
+         */
+        A,
+        /**
+         * The second gene of an interaction, from the second taxonomy identifier.
+         */
+        B,
+        /**
+         * Either gene of an interaction.
+         */
+        EITHER
+    }
 
-    private Set<Gene> genesA;
-    private Set<Gene> intersection;
-    private Set<Gene> genesB;
+    private volatile String typeA;
+    private volatile String typeB;
+    private volatile List<Interaction> interactions;
+    private volatile Side side = Side.B;
+    private final AtomicReference<Comparison> result;
 
     /**
      * Constructor for an new InteractionComperator with all fields.
@@ -33,12 +50,36 @@ public class InteractionComperator {
      * @param interactions a List containing all Interaction objects in the interaction file.
      */
     public InteractionComperator(String typeA, String typeB, List<Interaction> interactions) {
+        this(typeA, typeB, interactions, Side.B);
+    }
+
+    /**
+     * Constructor for an new InteractionComperator that compares a specific side of the interactions.
+     *
+     * @param typeA the first type of interactions for the first group of genes.
+     * @param typeB the second type of interactions for the second group of genes.
+     * @param interactions a List containing all Interaction objects in the interaction file.
+     * @param side the Side of the interactions to compare.
+     */
+    public InteractionComperator(String typeA, String typeB, List<Interaction> interactions, Side side) {
         this.typeA = typeA;
         this.typeB = typeB;
         this.interactions = interactions;
+        this.side = side;
+        this.result = new AtomicReference<>();
         compare();
     }
 
+    /**
+     * Constructor for an InteractionComperator that starts with a comparison that was already made.
+     *
+     * @param comparison the Comparison to publish as the first result.
+     */
+    InteractionComperator(Comparison comparison) {
+        this.result = new AtomicReference<>();
+        setComparison(comparison);
+    }
+
     /**
      * Returns the first type of interactions to compare.
      *
@@ -57,6 +98,15 @@ public class InteractionComperator {
         return typeB;
     }
 
+    /**
+     * Returns the side of the interactions that is compared.
+     *
+     * @return the Side of the interactions whose genes are in the sets.
+     */
+    public Side getSide() {
+        return side;
+    }
+
     /**
      * Returns all the interactions that can be compared in this comperator.
      *
@@ -66,31 +116,42 @@ public class InteractionComperator {
         return interactions;
     }
 
+    /**
+     * Returns the result of the last comparison.
+     * <p>
+     * The result is immutable, so it stays consistent while other threads compare again or change the side; read all values of one comparison from the same result.
+     *
+     * @return the last published Comparison.
+     */
+    public Comparison getComparison() {
+        return result.get();
+    }
+
     /**
      * Returns all the genes from group A containing typeA interactions.
      *
-     * @return a Set of Gene objects that contain typeA interactions.
+     * @return a read-only Set of Gene objects that contain typeA interactions.
      */
     public Set<Gene> getGenesA() {
-        return genesA;
+        return result.get().getGenesA();
     }
 
     /**
      * Returns all the genes that have a interaction in group A and a interaction in group B (intersection).
      *
-     * @return a Set of Gene objects that have a Interaction in group A and a Interaction in group B (intersection).
+     * @return a read-only Set of Gene objects that have a Interaction in group A and a Interaction in group B (intersection).
      */
     public Set<Gene> getGenesIntersection() {
-        return intersection;
+        return result.get().getGenesIntersection();
     }
 
     /**
      * Returns all the genes from group B containing typeB interactions.
      *
-     * @return a Set of Gene objects that contain typeB interactions.
+     * @return a read-only Set of Gene objects that contain typeB interactions.
      */
     public Set<Gene> getGenesB() {
-        return genesB;
+        return result.get().getGenesB();
     }
 
     /**
@@ -111,6 +172,21 @@ public class InteractionComperator {
         this.typeB = type;
     }
 
+    /**
+     * Sets the side of the interactions to compare and updates the sets of genes.
+     * <p>
+     * The sets for every side were made by the last compare, so this does not read the interactions again; a result for the new side is published in place of the last result.
+     *
+     * @param side the Side of the interactions to compare.
+     */
+    public void setSide(Side side) {
+        this.side = side;
+        Comparison last;
+        do {
+            last = result.get();
+        } while (!result.compareAndSet(last, last.withSide(side)));
+    }
+
     /**
      * Sets the list of interactions that can be compared in this object.
      *
@@ -123,43 +199,34 @@ public class InteractionComperator {
     /**
      * Creates two sets of genes and a set of the intersection.
      * <p>
-     * Creates two Sets with Genes that have an interaction equal to the type specified for their group. The two sets are compared with the retainAll function and the result of the intersection is stored in 'intersection'. Stores the sets in this object.
+     * Creates sets with the first and the second Genes of the interactions equal to the type specified for each group, in one pass over the interactions, and intersects the sets of the selected side. The result is an immutable Comparison that replaces the last result in one atomic swap, so readers never see a half-finished comparison.
      */
     public void compare() {
-        String type;
-        genesA = new HashSet<>();
-        genesB = new HashSet<>();
-        for (Interaction i : interactions) {
-            if (i.getType().equals(typeA) & i.getType().equals(typeB)) {
-                genesA.add(i.getGeneB());
-                genesB.add(i.getGeneB());
-            } else if (i.getType().equals(typeA)) {
-                genesA.add(i.getGeneB());
-            } else if (i.getType().equals(typeB)) {
-                genesB.add(i.getGeneB());
-            }
-        }
-        intersection = new HashSet<>(genesA);
-        intersection.retainAll(genesB);
+        result.set(Comparison.compare(typeA, typeB, side, interactions));
     }
 
     /**
-     * Returns a set with all the unique PubMed identifiers linked to the genes in the intersection.
+     * Publishes a comparison that was made elsewhere, e.g. on a background thread, as the result of this comparator.
+     * <p>
+     * The types, side and interactions of this comparator are set to those of the comparison.
      *
-     * @return a String Set containing all unique PubMed identifiers belonging to the Gene objects in 'intersection'.
+     * @param comparison the Comparison to publish.
      */
-    private Set<String> getIdentifiers() {
-        Set<String> identifiers = new HashSet<>();
-        for (Interaction i : interactions) {
-            for (Gene g : intersection) {
-                if (i.getGeneB().equals(g)) {
-                    for (String id : i.getPubMedID().split(",")) {
-                        identifiers.add(id);
-                    }
-                }
-            }
-        }
-        return identifiers;
+    void setComparison(Comparison comparison) {
+        typeA = comparison.getTypeA();
+        typeB = comparison.getTypeB();
+        side = comparison.getSide();
+        interactions = comparison.getInteractions();
+        result.set(comparison);
+    }
+
+    /**
+     * Returns all the unique PubMed identifiers linked to the genes in the intersection of the last comparison.
+     *
+     * @return a sorted int array containing all unique PubMed identifiers belonging to the Gene objects in the intersection.
+     */
+    int[] getIdentifiers() {
+        return result.get().getIdentifiers();
     }
 
     /**
@@ -173,16 +240,18 @@ public class InteractionComperator {
      * @throws NullExportException when there are no genes to export.
      */
     public void exportGenes(String path) throws FileNotFoundException, IOException, NullExportException {
-        if (!intersection.isEmpty()) {
-            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(path))));
-            writer.write("#Tax ID\tGene ID\tProduct accession version\tProduct name");
-            for (Gene g : intersection) {
-                writer.write(String.format("\n%s\t%s\t%s\t%s", g.getTaxID(), g.getGeneID(), g.getAccessionVersion(), g.getProductName()));
-            }
-            writer.close();
-        } else {
-            throw new NullExportException("No genes to export!");
-        }
+        result.get().exportGenes(path);
+    }
+
+    /**
+     * Writes all information about genes in the intersection to a writer in the tab-delimited export format.
+     *
+     * @param writer the Writer to write the genes to.
+     * @throws IOException when there is a problem writing to the writer.
+     * @throws NullExportException when there are no genes to export.
+     */
+    public void writeGenes(Writer writer) throws IOException, NullExportException {
+        result.get().writeGenes(writer);
     }
 
     /**
@@ -196,17 +265,53 @@ public class InteractionComperator {
      * @throws NullExportException when there are no genes to export.
      */
     public void exportPubMed(String path) throws FileNotFoundException, IOException, NullExportException {
-        Set<String> identifiers = getIdentifiers();
-        if (!intersection.isEmpty() && !identifiers.isEmpty()) {
-            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(path))));
-            writer.write("#PubMed ID (PMID)");
-            for (String id : identifiers) {
-                writer.write("\n" + id);
-            }
-            writer.close();
-        } else {
-            throw new NullExportException("No PubMed identifiers to export!");
+        result.get().exportPubMed(path);
+    }
+
+    /**
+     * Writes all PubMed identifiers associated with the genes in the intersection to a writer in the line-delimited export format.
+     *
+     * @param writer the Writer to write the PubMed identifiers to.
+     * @throws IOException when there is a problem writing to the writer.
+     * @throws NullExportException when there are no PubMed identifiers to export.
+     */
+    public void writePubMed(Writer writer) throws IOException, NullExportException {
+        result.get().writePubMed(writer);
+    }
+
+    /**
+     * Writes the PubMed header and one identifier per line to the writer.
+     *
+     * @param identifiers an int array containing the PubMed identifiers to write.
+     * @param writer the Writer to write the identifiers to.
+     * @throws IOException when there is a problem writing to the writer.
+     */
+    static void writeIdentifiers(int[] identifiers, Writer writer) throws IOException {
+        writer.write("#PubMed ID (PMID)");
+        char[] line = new char[12];
+        for (int id : identifiers) {
+            writer.write(line, 0, formatLine(id, line));
         }
+        writer.flush();
+    }
+
+    /**
+     * Formats a new line followed by a non-negative number into a char array, without creating a String.
+     *
+     * @param value the number to format.
+     * @param line a char array of at least 12 characters to format into.
+     * @return the number of characters used.
+     */
+    static int formatLine(int value, char[] line) {
+        int end = line.length;
+        int start = end;
+        do {
+            line[--start] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        line[--start] = '\n';
+        System.arraycopy(line, start, line, 0, end - start);
+        return end - start;
     }
 
 }
@@ -0,0 +1,408 @@
+package intercomp;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class representing a dataset of interactions that is split over several files, e.g. one file per release or per group of organisms.
+ * <p>
+ * The files are read concurrently, one reader per file. Every reader numbers the genes of its file in its own dictionary; after reading, the dictionaries are merged in the order of the files, so a gene that is in several files is one object with the tax ID, accession and name of the first file it is in, whichever reader finished first. The readers share one dictionary of types. Every file keeps its own list of interactions, with the locations of its rows, so a comparison can be made per file. The union of the files has one interaction per two genes and type: duplicate rows, also from different files, are merged like when a file is collapsed, keeping all PubMed identifiers and the latest update timestamp. For every interaction of the union the files it was read from are kept.
+ *
+ * @author Alexander
+ */
+public class InteractionDataset {
+
+    private final List<String> paths;
+    private final List<List<Interaction>> files;
+    private final long[] headerLengths;
+    private final Map<Interaction, Origin> origins;
+    private final List<Interaction> union;
+    private final Map<Gene, Gene> genes;
+    private final ConcurrentHashMap<String, String> types;
+    private int rowCount;
+    private GeneSetIndex index;
+
+    /**
+     * Constructor for reading several files with interactions into one dataset.
+     *
+     * @param paths the absolute paths to the files containing the interactions; the order of the paths is the number of each file.
+     * @throws FileNotFoundException when one of the files is not found.
+     * @throws IOException when there is something wrong with IO of one of the files.
+     * @throws IndexOutOfBoundsException when the format of a file is wrong. The format should be 11 tab-delimited values for each line, except lines that start with '#'.
+     */
+    public InteractionDataset(List<String> paths) throws FileNotFoundException, IOException, IndexOutOfBoundsException {
+        this.paths = Collections.unmodifiableList(new ArrayList<>(paths));
+        this.files = new ArrayList<>();
+        this.headerLengths = new long[paths.size()];
+        this.genes = new HashMap<>();
+        this.types = new ConcurrentHashMap<>();
+        this.origins = new HashMap<>();
+        readFiles();
+        PubMedTable table = new PubMedTable();
+        List<Interaction> merged = new ArrayList<>();
+        for (int f = 0; f < files.size(); f++) {
+            for (Interaction i : files.get(f)) {
+                Origin origin = origins.get(i);
+                if (origin == null) {
+                    origin = new Origin(i.copy(table));
+                    origins.put(origin.interaction, origin);
+                    merged.add(origin.interaction);
+                } else {
+                    if (origin.duplicates == null) {
+                        origin.duplicates = new Interaction.Duplicates();
+                    }
+                    origin.interaction.merge(i, origin.duplicates);
+                }
+                origin.files.set(f);
+            }
+        }
+        for (Origin origin : origins.values()) {
+            if (origin.duplicates != null) {
+                origin.interaction.endMerge(origin.duplicates);
+                origin.duplicates = null;
+            }
+        }
+        merged.sort(null);
+        this.union = Collections.unmodifiableList(merged);
+    }
+
+    /**
+     * Reads all files concurrently, each into its own sorted list of interactions, and gives the interactions of all files the same Gene objects.
+     * <p>
+     * The genes of every file are added to the dataset dictionary in the order of the files, so the details of a gene come from the lowest numbered file it is in. The interactions of a file are only visited again when the file has genes that an earlier file already had.
+     *
+     * @throws FileNotFoundException when one of the files is not found.
+     * @throws IOException when there is something wrong with IO of one of the files.
+     * @throws IndexOutOfBoundsException when the format of a file is wrong.
+     */
+    private void readFiles() throws FileNotFoundException, IOException, IndexOutOfBoundsException {
+        ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, Math.min(paths.size(), Runtime.getRuntime().availableProcessors())));
+        try {
+            List<Future<List<Interaction>>> reads = new ArrayList<>();
+            List<Map<Gene, Gene>> dictionaries = new ArrayList<>();
+            for (int f = 0; f < paths.size(); f++) {
+                final int file = f;
+                final Map<Gene, Gene> dictionary = new HashMap<>();
+                dictionaries.add(dictionary);
+                reads.add(readers.submit(() -> readFile(file, dictionary)));
+            }
+            for (int f = 0; f < reads.size(); f++) {
+                List<Interaction> interactions = await(reads.get(f));
+                boolean known = false;
+                for (Gene gene : dictionaries.get(f).keySet()) {
+                    known |= genes.putIfAbsent(gene, gene) != null;
+                }
+                dictionaries.set(f, null);
+                if (known) {
+                    for (Interaction i : interactions) {
+                        i.setGeneA(genes.get(i.getGeneA()));
+                        i.setGeneB(genes.get(i.getGeneB()));
+                    }
+                }
+                rowCount += interactions.size();
+                files.add(Collections.unmodifiableList(interactions));
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads one file into a sorted list of interactions whose genes are taken from the dictionary of the file and whose types are taken from the shared dictionary.
+     *
+     * @param file the number of the file.
+     * @param dictionary the dictionary of the genes of the file, which is only used by this reader.
+     * @return a List with an Interaction for every row of the file.
+     * @throws FileNotFoundException when the file is not found.
+     * @throws IOException when there is something wrong with IO of the file.
+     * @throws IndexOutOfBoundsException when the format of the file is wrong.
+     * @throws CancellationException when the reader was interrupted, e.g. because another file failed.
+     */
+    private List<Interaction> readFile(int file, Map<Gene, Gene> dictionary) throws FileNotFoundException, IOException, IndexOutOfBoundsException {
+        List<Interaction> interactions = new ArrayList<>();
+        PubMedTable table = new PubMedTable();
+        int lines = 0;
+        try (LineReader reader = new LineReader(paths.get(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                InteractionsFile.checkInterrupted(++lines, reader);
+                if (line.startsWith("#") && interactions.isEmpty()) {
+                    headerLengths[file] = reader.getOffset() + reader.getLength();
+                }
+                if (!line.startsWith("#") && !line.isEmpty()) {
+                    Interaction i = InteractionsFile.parseLine(line, table);
+                    i.setGeneA(shared(dictionary, i.getGeneA()));
+                    i.setGeneB(shared(dictionary, i.getGeneB()));
+                    i.setType(shared(types, i.getType()));
+                    i.setSource(SourceRows.pack(reader.getOffset(), reader.getLength()));
+                    interactions.add(i);
+                }
+            }
+        }
+        interactions.sort(null);
+        return interactions;
+    }
+
+    /**
+     * Returns the object in a dictionary that is equal to a value, adding the value when it is new.
+     *
+     * @param <T> the type of the values.
+     * @param dictionary the dictionary, a ConcurrentHashMap when it is shared by the readers.
+     * @param value the value to look up.
+     * @return the object in the dictionary equal to the value.
+     */
+    private static <T> T shared(Map<T, T> dictionary, T value) {
+        T known = dictionary.putIfAbsent(value, value);
+        return known == null ? value : known;
+    }
+
+    /**
+     * Waits for the read of a file, passing on its exception.
+     *
+     * @param read the Future of the read.
+     * @return the interactions of the file.
+     * @throws IOException when the read failed on IO.
+     * @throws IndexOutOfBoundsException when the format of the file is wrong.
+     */
+    private static List<Interaction> await(Future<List<Interaction>> read) throws IOException, IndexOutOfBoundsException {
+        try {
+            return read.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof IndexOutOfBoundsException) {
+                throw (IndexOutOfBoundsException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the files", e);
+        }
+    }
+
+    /**
+     * Returns the paths of the files of the dataset.
+     *
+     * @return a List with the paths in the order of the files.
+     */
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    /**
+     * Returns the number of files of the dataset.
+     *
+     * @return the number of files.
+     */
+    public int getFileCount() {
+        return paths.size();
+    }
+
+    /**
+     * Returns the number of interaction lines in all files, including duplicates.
+     *
+     * @return the number of rows that were read.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the interactions of one file.
+     *
+     * @param file the number of the file.
+     * @return a List with an Interaction for every row of the file, sorted on type.
+     */
+    public List<Interaction> getInteractions(int file) {
+        return files.get(file);
+    }
+
+    /**
+     * Returns the union of the interactions of all files, with one interaction per two genes and type.
+     *
+     * @return a List with the merged interactions, sorted on type.
+     */
+    public List<Interaction> getInteractions() {
+        return union;
+    }
+
+    /**
+     * Returns the numbers of the files an interaction was read from.
+     *
+     * @param interaction an Interaction of the dataset, or any Interaction between the same two genes with the same type.
+     * @return a new BitSet with the numbers of the files, which is empty when the interaction is not in the dataset.
+     */
+    public BitSet getFiles(Interaction interaction) {
+        Origin origin = origins.get(interaction);
+        return origin == null ? new BitSet() : (BitSet) origin.files.clone();
+    }
+
+    /**
+     * Returns the types of interactions in all files.
+     *
+     * @return a Set with every type of interactions.
+     */
+    public Set<String> getTypes() {
+        return Collections.unmodifiableSet(types.keySet());
+    }
+
+    /**
+     * Returns the types of interactions in one file.
+     *
+     * @param file the number of the file.
+     * @return a new Set with the types of interactions of the file.
+     */
+    public Set<String> getTypes(int file) {
+        Set<String> fileTypes = new HashSet<>();
+        for (Interaction i : files.get(file)) {
+            fileTypes.add(i.getType());
+        }
+        return fileTypes;
+    }
+
+    /**
+     * Returns an index with the genes of every type of interaction in the union, creating it the first time it is needed.
+     *
+     * @return a GeneSetIndex of the union of the files.
+     */
+    public synchronized GeneSetIndex getGeneSetIndex() {
+        if (index == null) {
+            index = new GeneSetIndex(union);
+        }
+        return index;
+    }
+
+    /**
+     * Compares two types of interactions over the union of all files.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param side the Side of the interactions to compare.
+     * @return the Comparison of the two types in the union.
+     */
+    public Comparison compare(String typeA, String typeB, InteractionComperator.Side side) {
+        return Comparison.compare(typeA, typeB, side, union);
+    }
+
+    /**
+     * Compares two types of interactions in one file.
+     *
+     * @param file the number of the file.
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param side the Side of the interactions to compare.
+     * @return the Comparison of the two types in the file, which records the path of the file.
+     */
+    public Comparison compare(int file, String typeA, String typeB, InteractionComperator.Side side) {
+        return Comparison.compare(typeA, typeB, side, files.get(file)).withPath(paths.get(file));
+    }
+
+    /**
+     * Exports the original lines of the interactions linked to the genes in the intersection of a comparison of one file.
+     *
+     * @param file the number of the file the comparison was made on.
+     * @param comparison the Comparison of interactions of the file.
+     * @param exportPath a String absolute path to a file.
+     * @throws FileNotFoundException when the file specified in 'exportPath' can not be created.
+     * @throws IOException when there is a problem reading the file or writing the export.
+     * @throws NullExportException when there are no rows to export.
+     * @throws IllegalArgumentException when the comparison was not made of the interactions of the file.
+     */
+    public void exportRows(int file, Comparison comparison, String exportPath) throws FileNotFoundException, IOException, NullExportException {
+        if (!paths.get(file).equals(comparison.getPath())) {
+            throw new IllegalArgumentException("The comparison was not made of the interactions of " + paths.get(file));
+        }
+        long[] sources = comparison.getSources();
+        if (sources.length == 0) {
+            throw new NullExportException("No interactions to export!");
+        }
+        SourceRows.export(paths.get(file), headerLengths[file], sources, sources.length, exportPath);
+    }
+
+    /**
+     * An interaction of the union and the files it was read from.
+     */
+    private static class Origin {
+
+        private final Interaction interaction;
+        private final BitSet files;
+        private Interaction.Duplicates duplicates;
+
+        Origin(Interaction interaction) {
+            this.interaction = interaction;
+            this.files = new BitSet();
+        }
+    }
+
+    /**
+     * Compares two types of interactions per file and over the union of several files, and exports the genes in the intersection of the union.
+     * <p>
+     * Expects the first type, the second type, the side (A, B or EITHER), the path to export the genes to and the paths to the interactions files. The sizes of the comparison of every file and of the union are printed.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length < 5) {
+            System.err.println("Usage: InteractionDataset <type A> <type B> <A|B|EITHER> <genes export file> <interactions file>...");
+            System.exit(2);
+        }
+        InteractionComperator.Side side = null;
+        try {
+            side = InteractionComperator.Side.valueOf(args[2].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("The side should be A, B or EITHER");
+            System.exit(2);
+        }
+        try {
+            List<String> paths = Arrays.asList(args).subList(4, args.length);
+            InteractionDataset dataset = new InteractionDataset(paths);
+            System.out.println("#File\tRows\tType A\tType B\tIntersection");
+            for (int f = 0; f < dataset.getFileCount(); f++) {
+                print(paths.get(f), dataset.getInteractions(f).size(), dataset.compare(f, args[0], args[1], side));
+            }
+            Comparison union = dataset.compare(args[0], args[1], side);
+            print("union", dataset.getInteractions().size(), union);
+            union.exportGenes(args[3]);
+        } catch (FileNotFoundException e) {
+            System.err.println("Specified file not found");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("There was a problem reading or writing a file");
+            System.exit(1);
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("The specified file has not the correct format");
+            System.exit(1);
+        } catch (NullExportException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Prints the sizes of a comparison.
+     *
+     * @param name the name of the file or the union.
+     * @param rows the number of interactions that were compared.
+     * @param comparison the Comparison to print.
+     */
+    private static void print(String name, int rows, Comparison comparison) {
+        System.out.println(name + "\t" + rows + "\t" + comparison.getGenesA().size() + "\t" + comparison.getGenesB().size() + "\t" + comparison.getGenesIntersection().size());
+    }
+
+}
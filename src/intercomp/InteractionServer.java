@@ -0,0 +1,563 @@
+package intercomp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local HTTP server that shares one loaded interactions file between many clients.
+ * <p>
+ * The interactions file is loaded once (spilled to disk when it is too large for memory) and shared by all requests. Clients send compare, stats and export requests to a JSON/text endpoint on the loopback address. The dispatcher thread of the server only hands every request to a bounded pool of worker threads; when the pool and its queue are full, the request is answered at once with 503 and a Retry-After header, so a slow request never blocks accepting other connections. Connections are kept alive so clients can pipeline requests, and every response is streamed in chunks instead of being buffered first.
+ * <ul>
+ * <li>GET /types returns all types of interactions as a JSON array.</li>
+ * <li>GET /stats returns the statistics of the file as a JSON object.</li>
+ * <li>GET /compare?typeA=..&amp;typeB=.. returns the Venn counts of two types as a JSON object.</li>
+ * <li>GET /export/genes?typeA=..&amp;typeB=.. streams the genes in the intersection in the export format.</li>
+ * <li>GET /export/pubmed?typeA=..&amp;typeB=.. streams the PubMed identifiers of the intersection in the export format.</li>
+ * </ul>
+ * The requests about two types accept an optional parameter side=A|B|EITHER for the gene of the interactions to compare; the default is B. They also accept optional parameters from=YEAR and to=YEAR to only compare the interactions last updated in those years.
+ *
+ * @author Alexander
+ */
+public class InteractionServer {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int QUEUE_PER_WORKER = 16;
+    private static final int CACHED_COMPARISONS = 64;
+    private static final String RETRY_AFTER = "1";
+
+    private final InteractionsFile file;
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+    private final Map<String, Comparison> comparisons;
+
+    /**
+     * Constructor for a server that answers requests about one interactions file.
+     *
+     * @param file the InteractionsFile that is shared between all clients.
+     * @param port the port on the loopback address to listen on.
+     * @param threads the maximum number of requests that are handled at the same time.
+     * @throws IOException when the server can not bind to the port.
+     */
+    public InteractionServer(InteractionsFile file, int port, int threads) throws IOException {
+        this.file = file;
+        this.comparisons = new LinkedHashMap<String, Comparison>(CACHED_COMPARISONS * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Comparison> eldest) {
+                return size() > CACHED_COMPARISONS;
+            }
+        };
+        // A full queue rejects the request, which the dispatcher answers with 503 instead of running it itself
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * QUEUE_PER_WORKER), new ThreadPoolExecutor.AbortPolicy());
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), threads * QUEUE_PER_WORKER);
+        // Without an executor the handlers are called on the dispatcher thread, and only pass the request on to the workers
+        server.setExecutor(null);
+        server.createContext("/types", new TypesHandler());
+        server.createContext("/stats", new StatsHandler());
+        server.createContext("/compare", new CompareHandler());
+        server.createContext("/export/genes", new ExportHandler(false));
+        server.createContext("/export/pubmed", new ExportHandler(true));
+    }
+
+    /**
+     * Returns the interactions file served by this server.
+     *
+     * @return the InteractionsFile that is shared between all clients.
+     */
+    public InteractionsFile getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return the port on the loopback address.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and shuts down the worker threads.
+     *
+     * @param delay the maximum time in seconds to wait for running requests to finish.
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        workers.shutdown();
+    }
+
+    /**
+     * Returns the comparison of two types of interactions.
+     * <p>
+     * Recently used comparisons are kept, so clients asking for the same types (e.g. compare followed by both exports) do not scan the interactions again. A kept Comparison holds the genes of every side and is immutable, so it is shared between requests and another side only needs a new intersection. The cache is a least recently used map; it is only locked to look up and store a comparison, not while comparing, so two requests that miss at the same time may both compare, after which the first result is kept.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param side the Side of the interactions to compare.
+     * @param from the first year of the interactions to compare, null for no lower bound.
+     * @param to the last year of the interactions to compare, null for no upper bound.
+     * @return the Comparison of the two types.
+     */
+    private Comparison getComparison(String typeA, String typeB, InteractionComperator.Side side, Integer from, Integer to) {
+        String key = typeA + '\t' + typeB + '\t' + from + '\t' + to;
+        Comparison comparison;
+        synchronized (comparisons) {
+            comparison = comparisons.get(key);
+        }
+        if (comparison == null) {
+            Comparison compared;
+            if (from == null && to == null) {
+                compared = file.compare(typeA, typeB, side);
+            } else {
+                long start = from == null ? Long.MIN_VALUE : TimelineIndex.startOfYear(from);
+                long end = to == null ? Long.MAX_VALUE : TimelineIndex.startOfYear(to + 1);
+                compared = file.getTimeline().compare(typeA, typeB, side, start, end).withPath(file.getPath());
+            }
+            synchronized (comparisons) {
+                comparison = comparisons.putIfAbsent(key, compared);
+            }
+            if (comparison == null) {
+                return compared;
+            }
+        }
+        return comparison.withSide(side);
+    }
+
+    /**
+     * Base class for all handlers; takes care of the request method, the parameters, the response headers and errors.
+     * <p>
+     * Everything that can fail, like checking the parameters and comparing the types, is done by prepare before the response headers are sent, so every failure can still be answered with an error status. respond only writes the prepared result.
+     *
+     * @param <T> the type of the result prepared for the response.
+     */
+    private abstract class Handler<T> implements HttpHandler {
+
+        private final String contentType;
+
+        /**
+         * Constructor for a handler that answers with a specific content type.
+         *
+         * @param contentType the MIME type of the response.
+         */
+        Handler(String contentType) {
+            this.contentType = contentType;
+        }
+
+        /**
+         * Passes a request from the dispatcher thread to the workers, or answers it with 503 when the workers are all busy and their queue is full.
+         *
+         * @param exchange the HttpExchange of the request.
+         * @throws IOException when the 503 response can not be written.
+         */
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                workers.execute(() -> serve(exchange));
+            } catch (RejectedExecutionException e) {
+                try {
+                    exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER);
+                    sendError(exchange, 503, "The server is busy, try again later");
+                } finally {
+                    exchange.close();
+                }
+            }
+        }
+
+        /**
+         * Answers a request on a worker thread.
+         *
+         * @param exchange the HttpExchange of the request.
+         */
+        private void serve(HttpExchange exchange) {
+            try {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    sendError(exchange, 405, "Only GET requests are supported");
+                    return;
+                }
+                Map<String, String> parameters;
+                try {
+                    parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+                } catch (IllegalArgumentException e) {
+                    sendError(exchange, 400, "Malformed query: " + e.getMessage());
+                    return;
+                }
+                T prepared = prepare(parameters);
+                exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=UTF-8");
+                // A length of 0 makes the server use chunked encoding, so the response is streamed while it is written
+                exchange.sendResponseHeaders(200, 0);
+                Writer writer = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+                respond(prepared, writer);
+                writer.flush();
+            } catch (RequestException e) {
+                error(exchange, 400, e.getMessage());
+            } catch (NullExportException e) {
+                error(exchange, 404, e.getMessage());
+            } catch (IOException | RuntimeException e) {
+                error(exchange, 500, "Unreported error occured: " + e.getMessage());
+            } finally {
+                exchange.close();
+            }
+        }
+
+        /**
+         * Sends an error from a worker thread, where a client that has gone away can not be told anything else.
+         *
+         * @param exchange the HttpExchange of the request.
+         * @param status the HTTP status code.
+         * @param message the error message.
+         */
+        private void error(HttpExchange exchange, int status, String message) {
+            try {
+                sendError(exchange, status, message);
+            } catch (IOException e) {
+                // The connection is closed
+            }
+        }
+
+        /**
+         * Checks the parameters of a request and computes the result of the response, before the response is started.
+         *
+         * @param parameters a Map with the decoded query parameters.
+         * @return the result for respond, null when the handler needs none.
+         * @throws RequestException when the parameters are not correct.
+         */
+        T prepare(Map<String, String> parameters) throws RequestException {
+            return null;
+        }
+
+        /**
+         * Writes the body of the response.
+         *
+         * @param prepared the result of prepare.
+         * @param writer the Writer of the streamed response body.
+         * @throws IOException when there is a problem writing the response.
+         * @throws NullExportException when there is nothing to export.
+         */
+        abstract void respond(T prepared, Writer writer) throws IOException, NullExportException;
+    }
+
+    /**
+     * A request that can not be answered because of its parameters, answered with 400.
+     */
+    private static class RequestException extends Exception {
+
+        RequestException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Handler for /types.
+     */
+    private class TypesHandler extends Handler<Void> {
+
+        TypesHandler() {
+            super("application/json");
+        }
+
+        @Override
+        void respond(Void prepared, Writer writer) throws IOException {
+            List<String> types = new ArrayList<>(file.getTypes());
+            types.sort(null);
+            writer.write('[');
+            for (int i = 0; i < types.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeString(writer, types.get(i));
+            }
+            writer.write(']');
+        }
+    }
+
+    /**
+     * Handler for /stats.
+     */
+    private class StatsHandler extends Handler<Void> {
+
+        StatsHandler() {
+            super("application/json");
+        }
+
+        @Override
+        void respond(Void prepared, Writer writer) throws IOException {
+            writer.write("{\"path\":");
+            writeString(writer, file.getPath());
+            writer.write(",\"genesA\":" + file.getGenesA().size());
+            writer.write(",\"genesB\":" + file.getGenesB().size());
+            writer.write(",\"interactions\":" + file.getInteractions().size());
+            writer.write(",\"types\":" + file.getTypes().size());
+            writer.write('}');
+        }
+    }
+
+    /**
+     * Base handler for requests about two types of interactions, which prepares the comparison of the requested types.
+     */
+    private abstract class TypePairHandler extends Handler<Comparison> {
+
+        TypePairHandler(String contentType) {
+            super(contentType);
+        }
+
+        @Override
+        Comparison prepare(Map<String, String> parameters) throws RequestException {
+            for (String name : new String[]{"typeA", "typeB"}) {
+                String type = parameters.get(name);
+                if (type == null) {
+                    throw new RequestException("Missing parameter '" + name + "'");
+                }
+                if (!file.getTypes().contains(type)) {
+                    throw new RequestException("Unknown type of interaction '" + type + "'");
+                }
+            }
+            InteractionComperator.Side side;
+            try {
+                side = side(parameters);
+            } catch (IllegalArgumentException e) {
+                throw new RequestException("Unknown side '" + parameters.get("side") + "', should be A, B or EITHER");
+            }
+            Integer[] years = new Integer[2];
+            String[] names = {"from", "to"};
+            for (int n = 0; n < names.length; n++) {
+                try {
+                    years[n] = year(parameters, names[n]);
+                } catch (IllegalArgumentException e) {
+                    throw new RequestException("Parameter '" + names[n] + "' should be a year");
+                }
+            }
+            return getComparison(parameters.get("typeA"), parameters.get("typeB"), side, years[0], years[1]);
+        }
+
+        /**
+         * Returns the side of the interactions in the request.
+         *
+         * @param parameters a Map with the decoded query parameters.
+         * @return the requested Side, or B when no side is requested.
+         * @throws IllegalArgumentException when the requested side does not exist.
+         */
+        InteractionComperator.Side side(Map<String, String> parameters) throws IllegalArgumentException {
+            String side = parameters.get("side");
+            return side == null ? InteractionComperator.Side.B : InteractionComperator.Side.valueOf(side.toUpperCase());
+        }
+
+        /**
+         * Returns a year of the time range in the request.
+         *
+         * @param parameters a Map with the decoded query parameters.
+         * @param name the name of the parameter, "from" or "to".
+         * @return the requested year, or null when the parameter is not in the request.
+         * @throws IllegalArgumentException when the parameter is not a year.
+         */
+        Integer year(Map<String, String> parameters, String name) throws IllegalArgumentException {
+            String year = parameters.get(name);
+            if (year == null) {
+                return null;
+            }
+            int value = Integer.parseInt(year);
+            if (value < 1 || value > 9998) {
+                throw new IllegalArgumentException("Year out of range: " + value);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Handler for /compare.
+     */
+    private class CompareHandler extends TypePairHandler {
+
+        CompareHandler() {
+            super("application/json");
+        }
+
+        @Override
+        void respond(Comparison comparison, Writer writer) throws IOException {
+            writer.write("{\"typeA\":");
+            writeString(writer, comparison.getTypeA());
+            writer.write(",\"typeB\":");
+            writeString(writer, comparison.getTypeB());
+            writer.write(",\"side\":");
+            writeString(writer, comparison.getSide().name());
+            writer.write(",\"genesA\":" + comparison.getGenesA().size());
+            writer.write(",\"genesB\":" + comparison.getGenesB().size());
+            writer.write(",\"intersection\":" + comparison.getGenesIntersection().size());
+            writer.write('}');
+        }
+    }
+
+    /**
+     * Handler for /export/genes and /export/pubmed.
+     */
+    private class ExportHandler extends TypePairHandler {
+
+        private final boolean pubMed;
+
+        /**
+         * Constructor for an export handler.
+         *
+         * @param pubMed true to export PubMed identifiers, false to export genes.
+         */
+        ExportHandler(boolean pubMed) {
+            super("text/tab-separated-values");
+            this.pubMed = pubMed;
+        }
+
+        @Override
+        Comparison prepare(Map<String, String> parameters) throws RequestException {
+            Comparison comparison = super.prepare(parameters);
+            if (comparison.getGenesIntersection().isEmpty()) {
+                throw new RequestException(pubMed ? "No PubMed identifiers to export!" : "No genes to export!");
+            }
+            // The identifiers are kept by the comparison, so respond does not collect them again
+            if (pubMed && comparison.getIdentifiers().length == 0) {
+                throw new RequestException("No PubMed identifiers to export!");
+            }
+            return comparison;
+        }
+
+        @Override
+        void respond(Comparison comparison, Writer writer) throws IOException, NullExportException {
+            if (pubMed) {
+                comparison.writePubMed(writer);
+            } else {
+                comparison.writeGenes(writer);
+            }
+        }
+    }
+
+    /**
+     * Sends an error as a JSON object, if the response has not been started yet.
+     *
+     * @param exchange the HttpExchange of the request.
+     * @param status the HTTP status code.
+     * @param message the error message.
+     * @throws IOException when there is a problem writing the response.
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            // The response is already being streamed, the client will notice the aborted stream
+            return;
+        }
+        byte[] body = ("{\"error\":" + quote(message) + "}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Splits and decodes the query of a request URI.
+     *
+     * @param query the raw query of the URI, may be null.
+     * @return a Map with the decoded parameter names and values.
+     * @throws UnsupportedEncodingException when UTF-8 is not supported.
+     * @throws IllegalArgumentException when the query has a malformed escape sequence.
+     */
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int split = pair.indexOf('=');
+                if (split > 0) {
+                    parameters.put(URLDecoder.decode(pair.substring(0, split), "UTF-8"), URLDecoder.decode(pair.substring(split + 1), "UTF-8"));
+                }
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Writes a String as a quoted JSON string.
+     *
+     * @param writer the Writer to write to.
+     * @param value the String to write.
+     * @throws IOException when there is a problem writing.
+     */
+    private static void writeString(Writer writer, String value) throws IOException {
+        writer.write(quote(value));
+    }
+
+    /**
+     * Quotes and escapes a String for use in JSON.
+     *
+     * @param value the String to quote.
+     * @return the quoted JSON string.
+     */
+    static String quote(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * Starts a server for an interactions file.
+     * <p>
+     * Expects the path to the interactions file, optionally followed by the port and the number of worker threads.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: InteractionServer <interactions file> [port] [threads]");
+            System.exit(2);
+        }
+        try {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            InteractionServer server = new InteractionServer(new InteractionsFile(args[0], InteractionsFile.exceedsMemory(args[0])), port, threads);
+            server.start();
+            System.out.println("Serving " + args[0] + " on http://localhost:" + server.getPort() + "/");
+        } catch (FileNotFoundException e) {
+            System.err.println("Specified file not found");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("There was a problem reading the file or opening the port: " + e.getMessage());
+            System.exit(1);
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("The specified file has not the correct format");
+            System.exit(1);
+        } catch (NumberFormatException e) {
+            System.err.println("Port and threads should be numbers");
+            System.exit(2);
+        }
+    }
+
+}
@@ -0,0 +1,378 @@
+package intercomp;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.AbstractSequentialList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Class to keep the interactions of a file on disk instead of in memory.
+ * <p>
+ * Interactions are collected in a small buffer. When the buffer is full it is sorted on type and written to a run file in a temporary directory, with the genes and types replaced by their ordinals and the location of their source row. Only the gene and type dictionaries (in a GeneSetIndex) stay in memory. The resulting list reads the run files through memory-mapped buffers and merges them on type while iterating, so it has the same order as a sorted in-memory list but is only read sequentially.
+ * <p>
+ * Within a type the interactions are ordered on their genes, so duplicate interactions between the same two genes come out of the merge next to each other. When collapsing, those duplicates are merged while iterating, without keeping any edges in memory.
+ * <p>
+ * The run files are deleted when the spill is closed; the list returned by finish can not be used after that.
+ *
+ * @author Alexander
+ */
+public class InteractionSpill implements Closeable {
+
+    /**
+     * The default number of interactions that are sorted in memory before they are written to a run file.
+     */
+    public static final int DEFAULT_RUN_SIZE = 500000;
+
+    private final GeneSetIndex index;
+    private final int runSize;
+    private final boolean collapse;
+    private final File directory;
+    private final List<File> runs;
+    private final List<String> types;
+    private final Map<String, Integer> typeOrdinals;
+    private final List<Interaction> buffer;
+    private PubMedTable table;
+    private int size;
+
+    /**
+     * Constructor for a new spill in a temporary directory.
+     *
+     * @param index the GeneSetIndex that holds the dictionaries and gets every added interaction.
+     * @param runSize the number of interactions to sort in memory before writing a run file.
+     * @param collapse true to merge interactions between the same two genes with the same type.
+     * @throws IOException when the temporary directory can not be created.
+     */
+    public InteractionSpill(GeneSetIndex index, int runSize, boolean collapse) throws IOException {
+        this.index = index;
+        this.runSize = runSize;
+        this.collapse = collapse;
+        this.directory = Files.createTempDirectory("intercomp").toFile();
+        this.directory.deleteOnExit();
+        this.runs = new ArrayList<>();
+        this.types = new ArrayList<>();
+        this.typeOrdinals = new HashMap<>();
+        this.buffer = new ArrayList<>();
+        this.table = new PubMedTable();
+    }
+
+    /**
+     * Returns the table for the PubMed identifiers of the interactions in the buffer.
+     * <p>
+     * A new table is started after every run file, so the identifiers of written interactions do not stay in memory.
+     *
+     * @return the PubMedTable to parse the PubMed identifiers of the next interactions into.
+     */
+    public PubMedTable getPubMedTable() {
+        return table;
+    }
+
+    /**
+     * Adds an interaction to the index and to the spill.
+     *
+     * @param interaction the Interaction to add.
+     * @throws IOException when a run file can not be written.
+     */
+    public void add(Interaction interaction) throws IOException {
+        index.add(interaction);
+        if (!typeOrdinals.containsKey(interaction.getType())) {
+            typeOrdinals.put(interaction.getType(), types.size());
+            types.add(interaction.getType());
+        }
+        buffer.add(interaction);
+        size++;
+        if (buffer.size() >= runSize) {
+            writeRun();
+        }
+    }
+
+    /**
+     * Writes the remaining interactions and returns a list that reads all interactions from disk.
+     *
+     * @return a sequential List of all added interactions, sorted on type.
+     * @throws IOException when a run file can not be written or mapped.
+     */
+    public List<Interaction> finish() throws IOException {
+        if (!buffer.isEmpty()) {
+            writeRun();
+        }
+        List<ByteBuffer> mapped = new ArrayList<>();
+        for (File run : runs) {
+            try (RandomAccessFile file = new RandomAccessFile(run, "r")) {
+                mapped.add(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+            }
+        }
+        SpilledList list = new SpilledList(mapped, size);
+        if (collapse) {
+            int edges = 0;
+            for (Iterator<Interaction> i = list.iterator(); i.hasNext(); i.next()) {
+                edges++;
+            }
+            list = new SpilledList(mapped, edges);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the number of interactions that were added, including duplicates that are merged when collapsing.
+     *
+     * @return the number of added interactions.
+     */
+    public int getRowCount() {
+        return size;
+    }
+
+    /**
+     * Deletes the run files and the temporary directory.
+     * <p>
+     * Runs that can not be deleted yet, e.g. because they are still mapped on a system that does not allow that, are left to be deleted on exit.
+     */
+    @Override
+    public void close() {
+        for (File run : runs) {
+            run.delete();
+        }
+        runs.clear();
+        buffer.clear();
+        directory.delete();
+    }
+
+    /**
+     * Sorts the buffer on type and writes it to a new run file.
+     *
+     * @throws IOException when the run file can not be written.
+     */
+    private void writeRun() throws IOException {
+        buffer.sort(null);
+        File run = new File(directory, "run" + runs.size() + ".bin");
+        run.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16))) {
+            for (Interaction i : buffer) {
+                out.writeInt(typeOrdinals.get(i.getType()));
+                out.writeInt(index.getOrdinal(i.getGeneA()));
+                out.writeInt(index.getOrdinal(i.getGeneB()));
+                out.writeInt(i.getPubMedCount());
+                for (int n = 0; n < i.getPubMedCount(); n++) {
+                    out.writeInt(i.getPubMedID(n));
+                }
+                writeString(out, i.getLastUpdate());
+                writeString(out, i.getGeneRIF());
+                out.writeLong(i.getSourceCount() > 0 ? i.getSource(0) : SourceRows.UNKNOWN);
+            }
+        }
+        runs.add(run);
+        buffer.clear();
+        table = new PubMedTable();
+    }
+
+    /**
+     * Writes a String as its length followed by its UTF-8 bytes.
+     *
+     * @param out the DataOutputStream to write to.
+     * @param value the String to write.
+     * @throws IOException when the String can not be written.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a String written by writeString.
+     *
+     * @param in the buffer to read from.
+     * @return the String that was written.
+     */
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reading position in one run file, holding the next interaction of that run.
+     */
+    private class Cursor implements Comparable<Cursor> {
+
+        private final ByteBuffer buffer;
+        private final int run;
+        private int type;
+        private int geneA;
+        private int geneB;
+        private Interaction next;
+
+        Cursor(ByteBuffer buffer, int run) {
+            this.buffer = buffer;
+            this.run = run;
+            advance();
+        }
+
+        /**
+         * Reads the next interaction of the run, or sets it to null at the end of the run.
+         */
+        final void advance() {
+            if (!buffer.hasRemaining()) {
+                next = null;
+                return;
+            }
+            type = buffer.getInt();
+            geneA = buffer.getInt();
+            geneB = buffer.getInt();
+            int[] identifiers = new int[buffer.getInt()];
+            for (int n = 0; n < identifiers.length; n++) {
+                identifiers[n] = buffer.getInt();
+            }
+            next = new Interaction(index.getGene(geneA), index.getGene(geneB), new PubMedTable(identifiers), 0, types.get(type), readString(buffer), readString(buffer));
+            next.setSource(buffer.getLong());
+        }
+
+        /**
+         * Checks if the next interaction of this run is between two genes with a type.
+         *
+         * @param type the ordinal of the type.
+         * @param geneA the ordinal of the first gene.
+         * @param geneB the ordinal of the second gene.
+         * @return true when the next interaction is that edge.
+         */
+        boolean isEdge(int type, int geneA, int geneB) {
+            return this.type == type && this.geneA == geneA && this.geneB == geneB;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            int order = next.compareTo(other.next);
+            return order != 0 ? order : Integer.compare(run, other.run);
+        }
+    }
+
+    /**
+     * List of interactions that is read from the run files while iterating.
+     * <p>
+     * Only forward iteration is supported efficiently; get(int) reads all interactions before the requested one. The list can not be changed.
+     */
+    private class SpilledList extends AbstractSequentialList<Interaction> {
+
+        private final List<ByteBuffer> mapped;
+        private final int size;
+
+        SpilledList(List<ByteBuffer> mapped, int size) {
+            this.mapped = mapped;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public ListIterator<Interaction> listIterator(int start) {
+            final PriorityQueue<Cursor> queue = new PriorityQueue<>();
+            for (int r = 0; r < mapped.size(); r++) {
+                // Every iterator gets its own view of the buffers, so iterators can be used by different threads
+                ByteBuffer view = mapped.get(r).duplicate();
+                Cursor cursor = new Cursor(view, r);
+                if (cursor.next != null) {
+                    queue.add(cursor);
+                }
+            }
+            ListIterator<Interaction> iterator = new ListIterator<Interaction>() {
+                private int position;
+
+                @Override
+                public boolean hasNext() {
+                    return !queue.isEmpty();
+                }
+
+                @Override
+                public Interaction next() {
+                    Cursor cursor = queue.poll();
+                    if (cursor == null) {
+                        throw new NoSuchElementException();
+                    }
+                    Interaction interaction = cursor.next;
+                    int type = cursor.type;
+                    int geneA = cursor.geneA;
+                    int geneB = cursor.geneB;
+                    cursor.advance();
+                    if (cursor.next != null) {
+                        queue.add(cursor);
+                    }
+                    Interaction.Duplicates merged = null;
+                    while (collapse && !queue.isEmpty() && queue.peek().isEdge(type, geneA, geneB)) {
+                        Cursor duplicate = queue.poll();
+                        if (merged == null) {
+                            merged = new Interaction.Duplicates();
+                        }
+                        interaction.merge(duplicate.next, merged);
+                        duplicate.advance();
+                        if (duplicate.next != null) {
+                            queue.add(duplicate);
+                        }
+                    }
+                    if (merged != null) {
+                        interaction.endMerge(merged);
+                    }
+                    position++;
+                    return interaction;
+                }
+
+                @Override
+                public boolean hasPrevious() {
+                    return false;
+                }
+
+                @Override
+                public Interaction previous() {
+                    throw new UnsupportedOperationException("Spilled interactions can only be read forward");
+                }
+
+                @Override
+                public int nextIndex() {
+                    return position;
+                }
+
+                @Override
+                public int previousIndex() {
+                    return position - 1;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("Spilled interactions can not be changed");
+                }
+
+                @Override
+                public void set(Interaction e) {
+                    throw new UnsupportedOperationException("Spilled interactions can not be changed");
+                }
+
+                @Override
+                public void add(Interaction e) {
+                    throw new UnsupportedOperationException("Spilled interactions can not be changed");
+                }
+            };
+            for (int i = 0; i < start; i++) {
+                iterator.next();
+            }
+            return iterator;
+        }
+    }
+
+}
@@ -1,26 +1,60 @@
 package intercomp;
 
-import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 /**
  * Class representing a file with (multiple) gene(s) and the interactions between them.
+ * <p>
+ * While the file is loaded, a TypeSketch of the first and the second genes of every type is made, so the overlap of two types can be estimated right away, before they are compared exactly.
+ * <p>
+ * A spilled file keeps its interactions in temporary run files until it is closed; close a file that is no longer used so the run files are deleted.
  *
  * @author Alexander
  */
-public class InteractionsFile {
+public class InteractionsFile implements Closeable {
+
+    /**
+     * The estimated number of bytes of memory needed per byte of the file when all interactions are kept in memory.
+     */
+    private static final int MEMORY_PER_BYTE = 4;
+
+    /**
+     * The interrupted status of the thread is checked every CHECK_INTERVAL + 1 lines while the file is read.
+     */
+    private static final int CHECK_INTERVAL = 0xFFFF;
+
+    /**
+     * The number of tab-delimited values of an interaction line.
+     */
+    static final int COLUMNS = 12;
 
     private final String path;
+    private final boolean spilled;
+    private final boolean collapsed;
+    private int rowCount;
     private List<Interaction> interactions;
+    private InteractionSpill spill;
+    private GeneSetIndex index;
+    private GeneStatistics statistics;
+    private TimelineIndex timeline;
+    private PubMedTable pubmedTable;
     private Set<Gene> genesASet;
     private Set<Gene> genesBSet;
     private Set<String> typesSet;
+    private Map<String, TypeSketch[]> sketches;
+    private long headerLength;
 
     /**
      * Constructor for reading a file with interactions and storing the information in this object.
@@ -31,10 +65,63 @@ public class InteractionsFile {
      * @throws IndexOutOfBoundsException when the file format is wrong. The format should be 11 tab-delimited values for each line, except lines that start with '#'.
      */
     public InteractionsFile(String path) throws FileNotFoundException, IOException, IndexOutOfBoundsException {
+        this(path, false);
+    }
+
+    /**
+     * Constructor for reading a file with interactions, optionally keeping the interactions on disk.
+     * <p>
+     * When spilled, only the genes, the types and a GeneSetIndex are kept in memory. The interactions are written to sorted run files on disk and read back sequentially every time the list of interactions is iterated, so the size of the file is not limited by the available memory.
+     *
+     * @param path a absolute path to a file containing the interactions.
+     * @param spill true to keep the interactions on disk, false to keep them in memory.
+     * @throws FileNotFoundException when the specified file on the path is not found.
+     * @throws IOException when there is something wrong with IO of the file or the run files.
+     * @throws IndexOutOfBoundsException when the file format is wrong. The format should be 11 tab-delimited values for each line, except lines that start with '#'.
+     */
+    public InteractionsFile(String path, boolean spill) throws FileNotFoundException, IOException, IndexOutOfBoundsException {
+        this(path, spill, false);
+    }
+
+    /**
+     * Constructor for reading a file with interactions, optionally keeping the interactions on disk and collapsing duplicate interactions.
+     * <p>
+     * When collapsing, all rows with the same two genes and the same type are merged into one interaction with the PubMed identifiers of all those rows. The sets of genes and the PubMed identifiers of a comparison do not change, but there are fewer interactions to scan.
+     *
+     * @param path a absolute path to a file containing the interactions.
+     * @param spill true to keep the interactions on disk, false to keep them in memory.
+     * @param collapse true to merge rows between the same two genes with the same type.
+     * @throws FileNotFoundException when the specified file on the path is not found.
+     * @throws IOException when there is something wrong with IO of the file or the run files.
+     * @throws IndexOutOfBoundsException when the file format is wrong. The format should be 11 tab-delimited values for each line, except lines that start with '#'.
+     * @throws CancellationException when the thread was interrupted while the file was read.
+     */
+    public InteractionsFile(String path, boolean spill, boolean collapse) throws FileNotFoundException, IOException, IndexOutOfBoundsException {
         this.path = path;
-        readFile();
-        interactions.sort(null);
-        createLists();
+        this.spilled = spill;
+        this.collapsed = collapse;
+        if (spill) {
+            try {
+                spillFile();
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        } else {
+            readFile();
+            interactions.sort(null);
+            createLists();
+        }
+    }
+
+    /**
+     * Checks if a file is probably too large to keep all its interactions in memory.
+     *
+     * @param path a absolute path to a file containing the interactions.
+     * @return true when the file should be spilled to disk.
+     */
+    public static boolean exceedsMemory(String path) {
+        return new File(path).length() * MEMORY_PER_BYTE > Runtime.getRuntime().maxMemory();
     }
 
     /**
@@ -46,8 +133,37 @@ public class InteractionsFile {
         return path;
     }
 
+    /**
+     * Returns whether the interactions are kept on disk instead of in memory.
+     *
+     * @return true when the interactions are read from run files on disk.
+     */
+    public boolean isSpilled() {
+        return spilled;
+    }
+
+    /**
+     * Returns whether duplicate interactions between the same two genes with the same type were merged.
+     *
+     * @return true when the duplicate rows were collapsed into one interaction.
+     */
+    public boolean isCollapsed() {
+        return collapsed;
+    }
+
+    /**
+     * Returns the number of interaction lines in the file, including the lines that were merged when collapsing.
+     *
+     * @return the number of rows that were read.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
     /**
      * Returns a list with all interactions contained in the interactions file.
+     * <p>
+     * When the file is spilled, the list reads the interactions from disk while it is iterated and should only be iterated from start to end.
      *
      * @return a List containing every interaction in the file.
      */
@@ -55,6 +171,52 @@ public class InteractionsFile {
         return interactions;
     }
 
+    /**
+     * Returns an index with the genes of every type of interaction, creating it the first time it is needed.
+     *
+     * @return a GeneSetIndex of all interactions in the file.
+     */
+    public synchronized GeneSetIndex getGeneSetIndex() {
+        if (index == null) {
+            index = new GeneSetIndex(interactions);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the degree statistics of the genes of every type with the default number of most connected genes, calculating them the first time they are needed.
+     *
+     * @return the GeneStatistics of all interactions in the file.
+     */
+    public GeneStatistics getGeneStatistics() {
+        return getGeneStatistics(GeneStatistics.DEFAULT_TOP);
+    }
+
+    /**
+     * Returns the degree statistics of the genes of every type, calculating them again only when a different number of most connected genes is asked.
+     *
+     * @param top the number of most connected genes to keep per type.
+     * @return the GeneStatistics of all interactions in the file.
+     */
+    public synchronized GeneStatistics getGeneStatistics(int top) {
+        if (statistics == null || statistics.getTop() != top) {
+            statistics = new GeneStatistics(getGeneSetIndex(), interactions, top);
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns an index of the interactions of every type sorted on their last update, creating it the first time it is needed.
+     *
+     * @return the TimelineIndex of all interactions in the file.
+     */
+    public synchronized TimelineIndex getTimeline() {
+        if (timeline == null) {
+            timeline = new TimelineIndex(getGeneSetIndex(), interactions);
+        }
+        return timeline;
+    }
+
     /**
      * Returns a set with all the genes from the first taxonomy identifier in the interactions file.
      *
@@ -82,6 +244,116 @@ public class InteractionsFile {
         return typesSet;
     }
 
+    /**
+     * Returns the sketch of the genes of one type of interactions on one side.
+     *
+     * @param type the type of interactions.
+     * @param side the Side of the interactions whose genes are sketched; the sketch for either side is the merge of both sides.
+     * @return a TypeSketch of the genes, which is empty when the type is not in the file.
+     */
+    public TypeSketch getSketch(String type, InteractionComperator.Side side) {
+        TypeSketch[] sides = sketches.get(type);
+        if (sides == null) {
+            return new TypeSketch();
+        }
+        switch (side) {
+            case A:
+                return sides[0];
+            case B:
+                return sides[1];
+            default:
+                return sides[0].merge(sides[1]);
+        }
+    }
+
+    /**
+     * Estimates the overlap of the genes of two types of interactions from their sketches, without reading the interactions.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param side the Side of the interactions to compare.
+     * @return a TypeSketch.Estimate of the sizes, intersection and Jaccard similarity of both sets of genes.
+     */
+    public TypeSketch.Estimate estimateOverlap(String typeA, String typeB, InteractionComperator.Side side) {
+        return TypeSketch.estimate(getSketch(typeA, side), getSketch(typeB, side));
+    }
+
+    /**
+     * Compares two types of interactions of this file.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param side the Side of the interactions to compare.
+     * @return the Comparison of the two types, which records the path of this file.
+     * @throws CancellationException when the thread was interrupted during the comparison.
+     */
+    public Comparison compare(String typeA, String typeB, InteractionComperator.Side side) {
+        return Comparison.compare(typeA, typeB, side, interactions).withPath(path);
+    }
+
+    /**
+     * Exports the original lines of the interactions linked to the genes in the intersection of a comparison.
+     * <p>
+     * The header lines of the file and the linked rows are copied byte for byte from this file, in the order of the file, using the locations of the rows that were stored while loading. Rows are not parsed or formatted again.
+     *
+     * @param comparison the Comparison of interactions of this file, made by compare or another comparison that records the path of this file.
+     * @param exportPath a String absolute path to a file.
+     * @throws FileNotFoundException when the file specified in 'exportPath' can not be created.
+     * @throws IOException when there is a problem reading this file or writing the export.
+     * @throws NullExportException when there are no rows to export.
+     * @throws IllegalArgumentException when the comparison was not made of the interactions of this file.
+     */
+    public void exportRows(Comparison comparison, String exportPath) throws FileNotFoundException, IOException, NullExportException {
+        checkSource(comparison);
+        long[] sources = comparison.getSources();
+        if (sources.length == 0) {
+            throw new NullExportException("No interactions to export!");
+        }
+        SourceRows.export(path, headerLength, sources, sources.length, exportPath);
+    }
+
+    /**
+     * Writes the original lines of the interactions linked to the genes in the intersection of a comparison to a channel.
+     * <p>
+     * Writes the same bytes as exportRows, but leaves the channel open so the rows can be streamed to any destination.
+     *
+     * @param comparison the Comparison of interactions of this file, made by compare or another comparison that records the path of this file.
+     * @param out the WritableByteChannel to write the rows to.
+     * @throws IOException when there is a problem reading this file or writing to the channel.
+     * @throws NullExportException when there are no rows to export.
+     * @throws IllegalArgumentException when the comparison was not made of the interactions of this file.
+     */
+    public void writeRows(Comparison comparison, WritableByteChannel out) throws IOException, NullExportException {
+        checkSource(comparison);
+        long[] sources = comparison.getSources();
+        if (sources.length == 0) {
+            throw new NullExportException("No interactions to export!");
+        }
+        SourceRows.copy(path, headerLength, sources, sources.length, out);
+    }
+
+    /**
+     * Checks that a comparison was made of the interactions of this file, because the locations of its source rows only point into that file.
+     *
+     * @param comparison the Comparison to check.
+     * @throws IllegalArgumentException when the comparison records another file, or no file.
+     */
+    private void checkSource(Comparison comparison) {
+        if (!path.equals(comparison.getPath())) {
+            throw new IllegalArgumentException("The comparison was not made of the interactions of " + path);
+        }
+    }
+
+    /**
+     * Deletes the run files of a spilled file. The interactions of a spilled file, and the comparisons made of them, can not be used after the file is closed; closing a file that is kept in memory does nothing.
+     */
+    @Override
+    public void close() {
+        if (spill != null) {
+            spill.close();
+        }
+    }
+
     /**
      * Returns four statistics about the interactions file.
      * <p>
@@ -94,6 +366,9 @@ public class InteractionsFile {
         stats = stats.concat("Tax ID 1:               \t" + Integer.toString(genesASet.size()) + " genes\n");
         stats = stats.concat("Tax ID 2:               \t" + Integer.toString(genesBSet.size()) + " genes\n");
         stats = stats.concat("# Interactions:         \t" + Integer.toString(interactions.size()) + " interactions\n");
+        if (collapsed) {
+            stats = stats.concat("# Rows:                 \t" + Integer.toString(rowCount) + " rows\n");
+        }
         stats = stats.concat("# Types of interactions:\t" + Integer.toString(typesSet.size()) + " interactions");
         return stats;
     }
@@ -101,41 +376,180 @@ public class InteractionsFile {
     /**
      * Reads a file with the object's path, creates Gene objects and encapsulates them in Interaction objects.
      * <p>
-     * Opens a file with the path specified in this object. Tries to split the data of each line into 11 values and assign them to two Gene objects; one object with taxonomy identifier one and one with taxonomy identifier two. The two Gene objects are encapsulated in an Interaction object with the rest of the information in the line.
+     * Opens a file with the path specified in this object. Tries to split the data of each line into 11 values and assign them to two Gene objects; one object with taxonomy identifier one and one with taxonomy identifier two. The two Gene objects are encapsulated in an Interaction object with the rest of the information in the line, and the location of the line in the file is stored in the Interaction.
      *
      * @throws FileNotFoundException when the file at the path saved in this object is not found.
      * @throws IOException when there is something wrong with IO of the file.
      * @throws IndexOutOfBoundsException when the file format is wrong. The format should be 11 tab-delimited values for each line, except lines that start with '#'.
+     * @throws CancellationException when the thread was interrupted while reading.
      */
     private void readFile() throws FileNotFoundException, IOException, IndexOutOfBoundsException {
         String line;
-        BufferedReader file = new BufferedReader(new FileReader(path));
+        int lines = 0;
+        LineReader file = new LineReader(path);
+        InteractionCollapser collapser = collapsed ? new InteractionCollapser() : null;
         interactions = new ArrayList<>();
+        pubmedTable = new PubMedTable();
+        while ((line = file.readLine()) != null) {
+            checkInterrupted(++lines, file);
+            if (line.startsWith("#") && rowCount == 0) {
+                headerLength = file.getOffset() + file.getLength();
+            }
+            if (!line.startsWith("#") & line != "") {
+                Interaction i = parseLine(line, pubmedTable);
+                i.setSource(SourceRows.pack(file.getOffset(), file.getLength()));
+                rowCount++;
+                if (collapser == null || collapser.add(i)) {
+                    interactions.add(i);
+                }
+            }
+        }
+        file.close();
+        if (collapser != null) {
+            collapser.finish();
+        }
+    }
+
+    /**
+     * Reads a file with the object's path and writes the interactions to run files on disk.
+     * <p>
+     * Collects the genes and types while reading, so the interactions do not have to be read again to create the sets of genes and types. The genes are collected as ordinals of the GeneSetIndex, so no second set of Gene objects is kept next to its dictionary.
+     *
+     * @throws FileNotFoundException when the file at the path saved in this object is not found.
+     * @throws IOException when there is something wrong with IO of the file or the run files.
+     * @throws IndexOutOfBoundsException when the file format is wrong. The format should be 11 tab-delimited values for each line, except lines that start with '#'.
+     * @throws CancellationException when the thread was interrupted while reading.
+     */
+    private void spillFile() throws FileNotFoundException, IOException, IndexOutOfBoundsException {
+        String line;
+        int lines = 0;
+        LineReader file = new LineReader(path);
+        index = new GeneSetIndex();
+        spill = new InteractionSpill(index, InteractionSpill.DEFAULT_RUN_SIZE, collapsed);
+        BitSet genesA = new BitSet();
+        BitSet genesB = new BitSet();
+        typesSet = new HashSet<>();
+        sketches = new HashMap<>();
         while ((line = file.readLine()) != null) {
+            checkInterrupted(++lines, file);
+            if (line.startsWith("#") && spill.getRowCount() == 0) {
+                headerLength = file.getOffset() + file.getLength();
+            }
             if (!line.startsWith("#") & line != "") {
-                String[] data = line.split("\t");
-                Gene geneA = new Gene(data[1], data[0], data[2], data[3]);
-                Gene geneB = new Gene(data[6], data[5], data[7], data[8]);
-                interactions.add(new Interaction(geneA, geneB, data[9], data[4], data[10], data[11]));
+                Interaction i = parseLine(line, spill.getPubMedTable());
+                i.setSource(SourceRows.pack(file.getOffset(), file.getLength()));
+                spill.add(i);
+                genesA.set(index.getOrdinal(i.getGeneA()));
+                genesB.set(index.getOrdinal(i.getGeneB()));
+                typesSet.add(i.getType());
+                sketch(i);
             }
         }
         file.close();
+        interactions = spill.finish();
+        genesASet = index.toGenes(genesA);
+        genesBSet = index.toGenes(genesB);
+        rowCount = spill.getRowCount();
+    }
+
+    /**
+     * Stops reading the file when the thread was interrupted, e.g. because the GUI opened another file. The status is only checked every CHECK_INTERVAL + 1 lines.
+     *
+     * @param lines the number of lines read so far.
+     * @param file the LineReader of the file, which is closed when reading stops.
+     * @throws IOException when the file can not be closed.
+     * @throws CancellationException when the thread was interrupted.
+     */
+    static void checkInterrupted(int lines, LineReader file) throws IOException {
+        if ((lines & CHECK_INTERVAL) == 0 && Thread.currentThread().isInterrupted()) {
+            file.close();
+            throw new CancellationException("The loading was cancelled");
+        }
+    }
+
+    /**
+     * Splits one line of an interactions file into two Gene objects and an Interaction object.
+     * <p>
+     * The values are found with indexOf instead of a regular expression split, and the PubMed identifiers are parsed straight from the line, so only the values that are kept become Strings. Values after the last column are ignored.
+     *
+     * @param line a line with 12 tab-delimited values.
+     * @param table the PubMedTable to store the PubMed identifiers of the interaction in.
+     * @return the Interaction described by the line.
+     * @throws IndexOutOfBoundsException when the line has less than 12 tab-delimited values.
+     */
+    static Interaction parseLine(String line, PubMedTable table) throws IndexOutOfBoundsException {
+        int[] ends = new int[COLUMNS];
+        split(line, ends);
+        Gene geneA = new Gene(value(line, ends, 1), value(line, ends, 0), value(line, ends, 2), value(line, ends, 3));
+        Gene geneB = new Gene(value(line, ends, 6), value(line, ends, 5), value(line, ends, 7), value(line, ends, 8));
+        return new Interaction(geneA, geneB, table, table.add(line, ends[8] + 1, ends[9]), value(line, ends, 4), value(line, ends, 10), value(line, ends, 11));
+    }
+
+    /**
+     * Finds the tab (or the end of the line) after every value of a line of an interactions file with indexOf.
+     *
+     * @param line a line with 12 tab-delimited values.
+     * @param ends an int array of 12 elements that receives the index of the tab after every value.
+     * @throws IndexOutOfBoundsException when the line has less than 12 tab-delimited values.
+     */
+    static void split(String line, int[] ends) throws IndexOutOfBoundsException {
+        int start = 0;
+        for (int c = 0; c < COLUMNS; c++) {
+            int end = line.indexOf('\t', start);
+            if (end < 0) {
+                if (c < COLUMNS - 1) {
+                    throw new IndexOutOfBoundsException("The line has " + (c + 1) + " of " + COLUMNS + " values");
+                }
+                end = line.length();
+            }
+            ends[c] = end;
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Returns one value of a line that was split by split.
+     *
+     * @param line the line of the interactions file.
+     * @param ends the index of the tab (or end of the line) after every value.
+     * @param column the column of the value.
+     * @return the value as a String.
+     */
+    static String value(String line, int[] ends, int column) {
+        return line.substring(column == 0 ? 0 : ends[column - 1] + 1, ends[column]);
     }
 
     /**
      * Uses the data from the interactions list to form three sets of data.
      * <p>
-     * Uses the data from the interactions list to form a Set with the genes from taxonomy identifier one, a Set with the genes from taxonomy identifier two and a Set with all the kinds of interaction types. The sets are stored in three seperated variables; genesASet, genesBSet and typesSet.
+     * Uses the data from the interactions list to form a Set with the genes from taxonomy identifier one, a Set with the genes from taxonomy identifier two and a Set with all the kinds of interaction types. The sets are stored in three seperated variables; genesASet, genesBSet and typesSet. The sketches of every type are made in the same pass.
      */
     private void createLists() {
         genesASet = new HashSet<>();
         genesBSet = new HashSet<>();
         typesSet = new HashSet<>();
+        sketches = new HashMap<>();
         for (Interaction i : interactions) {
             genesASet.add(i.getGeneA());
             genesBSet.add(i.getGeneB());
             typesSet.add(i.getType());
+            sketch(i);
+        }
+    }
+
+    /**
+     * Adds the genes of an interaction to the sketches of its type.
+     *
+     * @param interaction the Interaction to sketch.
+     */
+    private void sketch(Interaction interaction) {
+        TypeSketch[] sides = sketches.get(interaction.getType());
+        if (sides == null) {
+            sides = new TypeSketch[]{new TypeSketch(), new TypeSketch()};
+            sketches.put(interaction.getType(), sides);
         }
+        sides[0].add(interaction.getGeneA());
+        sides[1].add(interaction.getGeneB());
     }
 
 }
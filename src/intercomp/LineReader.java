@@ -0,0 +1,135 @@
+package intercomp;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader that splits a file into lines while keeping track of the byte offset and length of every line.
+ * <p>
+ * BufferedReader works on characters and can not tell where a line starts in the file. This reader searches the line ends in a byte buffer, decodes every line as UTF-8 and remembers where the line was found, so the original bytes of the line can be copied from the file later.
+ *
+ * @author Alexander
+ */
+final class LineReader implements Closeable {
+
+    private final InputStream in;
+    private byte[] buffer;
+    private int start;
+    private int end;
+    private long position;
+    private long offset;
+    private int length;
+    private boolean eof;
+
+    /**
+     * Constructor for a reader of a file.
+     *
+     * @param path the path to the file to read.
+     * @throws FileNotFoundException when the file does not exist.
+     */
+    LineReader(String path) throws FileNotFoundException {
+        this(new FileInputStream(path));
+    }
+
+    /**
+     * Constructor for a reader of a stream; offsets are counted from the current position of the stream.
+     *
+     * @param in the InputStream to read.
+     */
+    LineReader(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[1 << 16];
+    }
+
+    /**
+     * Reads the next line.
+     *
+     * @return the line without its line terminator ("\n" or "\r\n"), or null at the end of the file.
+     * @throws IOException when the file can not be read.
+     */
+    String readLine() throws IOException {
+        int newline = find();
+        while (newline < 0 && !eof) {
+            fill();
+            newline = find();
+        }
+        if (start == end) {
+            return null;
+        }
+        int lineEnd = newline < 0 ? end : newline;
+        int next = newline < 0 ? end : newline + 1;
+        offset = position + start;
+        length = next - start;
+        int textEnd = lineEnd > start && buffer[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+        String line = new String(buffer, start, textEnd - start, StandardCharsets.UTF_8);
+        start = next;
+        return line;
+    }
+
+    /**
+     * Returns the byte offset in the file of the last line that was read.
+     *
+     * @return the offset of the first byte of the line.
+     */
+    long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the length in bytes of the last line that was read, including its line terminator.
+     *
+     * @return the number of bytes of the line.
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the index of the next new line character in the buffer.
+     *
+     * @return the index of the '\n' after start, or -1 when the buffer holds no complete line.
+     */
+    private int find() {
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer, growing it when a line does not fit, and reads more bytes.
+     *
+     * @throws IOException when the file can not be read.
+     */
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            position += start;
+            end -= start;
+            start = 0;
+        }
+        if (end == buffer.length) {
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, end);
+            buffer = grown;
+        }
+        int read = in.read(buffer, end, buffer.length - end);
+        if (read < 0) {
+            eof = true;
+        } else {
+            end += read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
@@ -0,0 +1,424 @@
+package intercomp;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+/**
+ * Class to test whether the overlap between the genes of two types of interactions is larger than expected by chance.
+ * <p>
+ * The universe is every gene that belongs to any type of interaction. For a pair of types the exact hypergeometric p-value of the overlap is calculated, together with a null distribution of overlaps made by drawing random gene sets of the same size from the universe. The permutations are split over the common fork/join pool, every task with its own split of a SplittableRandom, so results are reproducible for a seed regardless of the number of threads.
+ *
+ * @author Alexander
+ */
+public class OverlapStatistics {
+
+    private static final int PERMUTATIONS_PER_TASK = 64;
+
+    private final GeneSetIndex index;
+    private final int[] universe;
+    private final double[] logFactorials;
+
+    /**
+     * Constructor for statistics over all interactions in an index.
+     *
+     * @param index the GeneSetIndex with the genes of every type of interaction.
+     */
+    public OverlapStatistics(GeneSetIndex index) {
+        this.index = index;
+        this.universe = index.universe().stream().toArray();
+        this.logFactorials = new double[universe.length + 1];
+        for (int i = 1; i < logFactorials.length; i++) {
+            logFactorials[i] = logFactorials[i - 1] + Math.log(i);
+        }
+    }
+
+    /**
+     * Returns the index that the statistics are calculated for.
+     *
+     * @return the GeneSetIndex with the genes of every type of interaction.
+     */
+    public GeneSetIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the number of genes in the universe.
+     *
+     * @return the number of genes that belong to any type of interaction.
+     */
+    public int getUniverseSize() {
+        return universe.length;
+    }
+
+    /**
+     * Tests the overlap of one pair of types of interactions.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param permutations the number of random gene sets to draw; 0 to only calculate the hypergeometric p-value.
+     * @param seed the seed of the random number generator.
+     * @return a Result with the overlap, enrichment and p-values.
+     */
+    public Result test(String typeA, String typeB, int permutations, long seed) {
+        BitSet genesA = index.genes(typeA);
+        BitSet genesB = index.genes(typeB);
+        BitSet intersection = (BitSet) genesA.clone();
+        intersection.and(genesB);
+        int sizeA = genesA.cardinality();
+        int sizeB = genesB.cardinality();
+        int overlap = intersection.cardinality();
+        long[] nulls = new long[]{0, 0, 0};
+        if (permutations > 0 && sizeA > 0 && sizeB > 0) {
+            nulls = ForkJoinPool.commonPool().invoke(new PermutationTask(genesA, sizeB, overlap, permutations, new SplittableRandom(seed)));
+        }
+        return new Result(typeA, typeB, universe.length, sizeA, sizeB, overlap, hypergeometric(sizeA, sizeB, overlap), permutations, nulls);
+    }
+
+    /**
+     * Tests the overlap of every pair of different types of interactions.
+     * <p>
+     * The pairs are tested in parallel. Every pair gets its own seed derived from the given seed, and the results are sorted on their hypergeometric p-value.
+     *
+     * @param permutations the number of random gene sets to draw per pair; 0 to only calculate the hypergeometric p-values.
+     * @param seed the seed of the random number generator.
+     * @return a List of Result objects, most significant first.
+     */
+    public List<Result> testAll(final int permutations, long seed) {
+        final List<String> types = index.getTypes();
+        final List<String[]> pairs = new ArrayList<>();
+        for (int a = 0; a < types.size(); a++) {
+            for (int b = a + 1; b < types.size(); b++) {
+                pairs.add(new String[]{types.get(a), types.get(b)});
+            }
+        }
+        final SplittableRandom random = new SplittableRandom(seed);
+        final long[] seeds = new long[pairs.size()];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong();
+        }
+        final Result[] results = new Result[pairs.size()];
+        IntStream.range(0, pairs.size()).parallel().forEach(i -> {
+            results[i] = test(pairs.get(i)[0], pairs.get(i)[1], permutations, seeds[i]);
+        });
+        List<Result> sorted = new ArrayList<>();
+        Collections.addAll(sorted, results);
+        sorted.sort((x, y) -> Double.compare(x.getHypergeometricPValue(), y.getHypergeometricPValue()));
+        return sorted;
+    }
+
+    /**
+     * Exports results in a tab-delimited text file.
+     *
+     * @param results a List of Result objects to export.
+     * @param path a String absolute path to a file.
+     * @throws FileNotFoundException when the file specified in 'path' can not be found.
+     * @throws IOException when there is a problem with IO in the file.
+     * @throws NullExportException when there are no results to export.
+     */
+    public static void export(List<Result> results, String path) throws FileNotFoundException, IOException, NullExportException {
+        if (results.isEmpty()) {
+            throw new NullExportException("No results to export!");
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(path))));
+        writer.write("#Type A\tType B\tGenes A\tGenes B\tOverlap\tExpected\tEnrichment\tHypergeometric p\tPermutations\tPermutation p\tNull mean\tNull SD");
+        for (Result r : results) {
+            writer.write(String.format("\n%s\t%s\t%d\t%d\t%d\t%.3f\t%.4f\t%.4e\t%d\t%.4e\t%.3f\t%.3f", r.getTypeA(), r.getTypeB(), r.getSizeA(), r.getSizeB(), r.getOverlap(),
+                    r.getExpectedOverlap(), r.getEnrichment(), r.getHypergeometricPValue(), r.getPermutations(), r.getPermutationPValue(), r.getNullMean(), r.getNullStandardDeviation()));
+        }
+        writer.close();
+    }
+
+    /**
+     * Calculates the exact upper tail probability of the hypergeometric distribution, P(X &gt;= overlap).
+     * <p>
+     * The first term is calculated with log factorials, every next term with the ratio to the previous term, so the sum is accurate even for very small p-values.
+     *
+     * @param sizeA the number of genes of the first type.
+     * @param sizeB the number of genes of the second type.
+     * @param overlap the number of genes of both types.
+     * @return the probability to draw at least 'overlap' genes of the first type when drawing 'sizeB' genes from the universe.
+     */
+    double hypergeometric(int sizeA, int sizeB, int overlap) {
+        int total = universe.length;
+        int max = Math.min(sizeA, sizeB);
+        if (overlap > max || sizeB - overlap > total - sizeA) {
+            return 0.0;
+        }
+        if (overlap <= Math.max(0, sizeA + sizeB - total)) {
+            return 1.0;
+        }
+        double logFirst = logChoose(sizeA, overlap) + logChoose(total - sizeA, sizeB - overlap) - logChoose(total, sizeB);
+        double sum = 1.0;
+        double term = 1.0;
+        for (int i = overlap; i < max; i++) {
+            term *= (double) (sizeA - i) * (sizeB - i) / ((double) (i + 1) * (total - sizeA - sizeB + i + 1));
+            sum += term;
+            if (term < sum * 1e-17) {
+                break;
+            }
+        }
+        return Math.min(1.0, Math.exp(logFirst + Math.log(sum)));
+    }
+
+    /**
+     * Returns the natural logarithm of the binomial coefficient n over k.
+     *
+     * @param n the number of elements.
+     * @param k the number of chosen elements.
+     * @return log(n! / (k! (n - k)!)).
+     */
+    private double logChoose(int n, int k) {
+        return logFactorials[n] - logFactorials[k] - logFactorials[n - k];
+    }
+
+    /**
+     * Fork/join task that draws random gene sets and counts their overlap with a fixed gene set.
+     * <p>
+     * Returns three numbers: the number of random overlaps at least as large as the observed overlap, the sum of the random overlaps and the sum of their squares.
+     */
+    private class PermutationTask extends RecursiveTask<long[]> {
+
+        private final BitSet genesA;
+        private final int sizeB;
+        private final int observed;
+        private final int permutations;
+        private final SplittableRandom random;
+
+        PermutationTask(BitSet genesA, int sizeB, int observed, int permutations, SplittableRandom random) {
+            this.genesA = genesA;
+            this.sizeB = sizeB;
+            this.observed = observed;
+            this.permutations = permutations;
+            this.random = random;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (permutations > PERMUTATIONS_PER_TASK) {
+                int half = permutations / 2;
+                PermutationTask left = new PermutationTask(genesA, sizeB, observed, half, random.split());
+                PermutationTask right = new PermutationTask(genesA, sizeB, observed, permutations - half, random.split());
+                left.fork();
+                long[] r = right.compute();
+                long[] l = left.join();
+                return new long[]{l[0] + r[0], l[1] + r[1], l[2] + r[2]};
+            }
+            int[] shuffled = universe.clone();
+            long[] counts = new long[3];
+            for (int p = 0; p < permutations; p++) {
+                // Partial Fisher-Yates shuffle: the first sizeB elements are a uniformly random subset of the universe
+                int overlap = 0;
+                for (int i = 0; i < sizeB; i++) {
+                    int j = i + random.nextInt(shuffled.length - i);
+                    int ordinal = shuffled[j];
+                    shuffled[j] = shuffled[i];
+                    shuffled[i] = ordinal;
+                    if (genesA.get(ordinal)) {
+                        overlap++;
+                    }
+                }
+                if (overlap >= observed) {
+                    counts[0]++;
+                }
+                counts[1] += overlap;
+                counts[2] += (long) overlap * overlap;
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * The significance of the overlap between the genes of two types of interactions.
+     */
+    public static class Result {
+
+        private final String typeA;
+        private final String typeB;
+        private final int universe;
+        private final int sizeA;
+        private final int sizeB;
+        private final int overlap;
+        private final double hypergeometricPValue;
+        private final int permutations;
+        private final long[] nulls;
+
+        Result(String typeA, String typeB, int universe, int sizeA, int sizeB, int overlap, double hypergeometricPValue, int permutations, long[] nulls) {
+            this.typeA = typeA;
+            this.typeB = typeB;
+            this.universe = universe;
+            this.sizeA = sizeA;
+            this.sizeB = sizeB;
+            this.overlap = overlap;
+            this.hypergeometricPValue = hypergeometricPValue;
+            this.permutations = permutations;
+            this.nulls = nulls;
+        }
+
+        /**
+         * Returns the first type of interactions.
+         *
+         * @return the first type of interactions.
+         */
+        public String getTypeA() {
+            return typeA;
+        }
+
+        /**
+         * Returns the second type of interactions.
+         *
+         * @return the second type of interactions.
+         */
+        public String getTypeB() {
+            return typeB;
+        }
+
+        /**
+         * Returns the number of genes of the first type.
+         *
+         * @return the number of genes with a typeA interaction.
+         */
+        public int getSizeA() {
+            return sizeA;
+        }
+
+        /**
+         * Returns the number of genes of the second type.
+         *
+         * @return the number of genes with a typeB interaction.
+         */
+        public int getSizeB() {
+            return sizeB;
+        }
+
+        /**
+         * Returns the number of genes of both types.
+         *
+         * @return the size of the intersection.
+         */
+        public int getOverlap() {
+            return overlap;
+        }
+
+        /**
+         * Returns the expected number of genes of both types when the two sets were independent.
+         *
+         * @return the expected size of the intersection.
+         */
+        public double getExpectedOverlap() {
+            return universe == 0 ? 0.0 : (double) sizeA * sizeB / universe;
+        }
+
+        /**
+         * Returns the ratio between the observed and the expected overlap.
+         *
+         * @return the enrichment of the overlap; 0 when no overlap is expected.
+         */
+        public double getEnrichment() {
+            double expected = getExpectedOverlap();
+            return expected == 0.0 ? 0.0 : overlap / expected;
+        }
+
+        /**
+         * Returns the exact probability of an overlap at least this large.
+         *
+         * @return the hypergeometric p-value.
+         */
+        public double getHypergeometricPValue() {
+            return hypergeometricPValue;
+        }
+
+        /**
+         * Returns the number of random gene sets that were drawn.
+         *
+         * @return the number of permutations.
+         */
+        public int getPermutations() {
+            return permutations;
+        }
+
+        /**
+         * Returns the fraction of random gene sets with an overlap at least this large, with a pseudo count.
+         *
+         * @return the permutation p-value; NaN when no permutations were done.
+         */
+        public double getPermutationPValue() {
+            return permutations == 0 ? Double.NaN : (nulls[0] + 1.0) / (permutations + 1.0);
+        }
+
+        /**
+         * Returns the mean overlap of the random gene sets.
+         *
+         * @return the mean of the null distribution; NaN when no permutations were done.
+         */
+        public double getNullMean() {
+            return permutations == 0 ? Double.NaN : (double) nulls[1] / permutations;
+        }
+
+        /**
+         * Returns the standard deviation of the overlap of the random gene sets.
+         *
+         * @return the standard deviation of the null distribution; NaN when no permutations were done.
+         */
+        public double getNullStandardDeviation() {
+            if (permutations == 0) {
+                return Double.NaN;
+            }
+            double mean = getNullMean();
+            return Math.sqrt(Math.max(0.0, (double) nulls[2] / permutations - mean * mean));
+        }
+    }
+
+    /**
+     * Tests the overlap of one pair or of all pairs of types in an interactions file.
+     * <p>
+     * Expects the path to the interactions file, the number of permutations, the path to export the results to, and optionally two types of interactions. Without types every pair of types is tested.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length != 3 && args.length != 5) {
+            System.err.println("Usage: OverlapStatistics <interactions file> <permutations> <export file> [typeA typeB]");
+            System.exit(2);
+        }
+        try {
+            InteractionsFile file = new InteractionsFile(args[0], InteractionsFile.exceedsMemory(args[0]));
+            OverlapStatistics statistics = new OverlapStatistics(file.getGeneSetIndex());
+            int permutations = Integer.parseInt(args[1]);
+            List<Result> results;
+            if (args.length == 5) {
+                results = Collections.singletonList(statistics.test(args[3], args[4], permutations, System.nanoTime()));
+            } else {
+                results = statistics.testAll(permutations, System.nanoTime());
+            }
+            export(results, args[2]);
+        } catch (FileNotFoundException e) {
+            System.err.println("Specified file not found");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("There was a problem reading or writing a file");
+            System.exit(1);
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("The specified file has not the correct format");
+            System.exit(1);
+        } catch (NumberFormatException e) {
+            System.err.println("The number of permutations should be a number");
+            System.exit(2);
+        } catch (NullExportException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,269 @@
+package intercomp;
+
+import java.util.Arrays;
+
+/**
+ * Table with the PubMed identifiers of many interactions, packed in one array of integers.
+ * <p>
+ * Every interaction has an entry in the table. The identifiers of all entries are stored one after another in one int array, and a second array holds the offset where each entry starts. This replaces a comma-separated String per interaction, so the identifiers are parsed once and can be read without creating any objects.
+ *
+ * @author Alexander
+ */
+public final class PubMedTable {
+
+    private int[] identifiers;
+    private int[] offsets;
+    private int entries;
+
+    /**
+     * Constructor for an empty table.
+     */
+    public PubMedTable() {
+        identifiers = new int[16];
+        offsets = new int[16];
+    }
+
+    /**
+     * Constructor for a table with one entry.
+     *
+     * @param identifiers the PubMed identifiers of the entry.
+     */
+    PubMedTable(int[] identifiers) {
+        this.identifiers = identifiers;
+        this.offsets = new int[]{0, identifiers.length};
+        this.entries = 1;
+    }
+
+    /**
+     * Parses a comma-separated list of PubMed identifiers and adds it as a new entry.
+     * <p>
+     * Values that are not a number (like '-' for no identifiers) are skipped.
+     *
+     * @param list a String with comma-separated PubMed identifiers.
+     * @return the number of the new entry.
+     */
+    public int add(String list) {
+        return add(list, 0, list.length());
+    }
+
+    /**
+     * Parses a comma-separated list of PubMed identifiers in a part of a String and adds it as a new entry, like add(String) does.
+     *
+     * @param text the String that contains the list.
+     * @param from the index of the first character of the list.
+     * @param to the index after the last character of the list.
+     * @return the number of the new entry.
+     */
+    public synchronized int add(String text, int from, int to) {
+        int start = offsets[entries];
+        int value = 0;
+        boolean digits = false;
+        for (int i = from; i <= to; i++) {
+            char c = i < to ? text.charAt(i) : ',';
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits = true;
+            } else if (c == ',') {
+                if (digits) {
+                    ensureCapacity(start + 1);
+                    identifiers[start++] = value;
+                }
+                value = 0;
+                digits = false;
+            } else if (c != ' ') {
+                // Skip the rest of a value that is not a number
+                while (i + 1 < to && text.charAt(i + 1) != ',') {
+                    i++;
+                }
+                value = 0;
+                digits = false;
+            }
+        }
+        return endEntry(start);
+    }
+
+    /**
+     * Parses a comma-separated list of PubMed identifiers into a set, like add does, without adding an entry to a table.
+     *
+     * @param list a String with comma-separated PubMed identifiers.
+     * @param set the IntSet to add the identifiers to.
+     */
+    public static void parseTo(String list, IntSet set) {
+        int value = 0;
+        boolean digits = false;
+        for (int i = 0; i <= list.length(); i++) {
+            char c = i < list.length() ? list.charAt(i) : ',';
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits = true;
+            } else if (c == ',') {
+                if (digits) {
+                    set.add(value);
+                }
+                value = 0;
+                digits = false;
+            } else if (c != ' ') {
+                while (i + 1 < list.length() && list.charAt(i + 1) != ',') {
+                    i++;
+                }
+                value = 0;
+                digits = false;
+            }
+        }
+    }
+
+    /**
+     * Adds a new entry with the identifiers of two existing entries, without duplicates.
+     *
+     * @param first the number of the first entry.
+     * @param other the PubMedTable of the second entry, which may be this table.
+     * @param second the number of the second entry in the other table.
+     * @return the number of the new entry.
+     */
+    public synchronized int addUnion(int first, PubMedTable other, int second) {
+        int[] a = get(first);
+        int[] b = other.get(second);
+        int start = offsets[entries];
+        ensureCapacity(start + a.length + b.length);
+        for (int id : a) {
+            identifiers[start++] = id;
+        }
+        for (int id : b) {
+            if (!contains(a, id)) {
+                identifiers[start++] = id;
+            }
+        }
+        return endEntry(start);
+    }
+
+    /**
+     * Adds a new entry with the first identifiers of an array.
+     *
+     * @param values the array with the PubMed identifiers of the entry.
+     * @param length the number of identifiers of the entry.
+     * @return the number of the new entry.
+     */
+    synchronized int add(int[] values, int length) {
+        int start = offsets[entries];
+        ensureCapacity(start + length);
+        System.arraycopy(values, 0, identifiers, start, length);
+        return endEntry(start + length);
+    }
+
+    /**
+     * Adds a new entry with the identifiers of an entry of another table.
+     *
+     * @param other the PubMedTable of the entry.
+     * @param entry the number of the entry in the other table.
+     * @return the number of the new entry.
+     */
+    public synchronized int addCopy(PubMedTable other, int entry) {
+        int[] copied = other.get(entry);
+        int start = offsets[entries];
+        ensureCapacity(start + copied.length);
+        System.arraycopy(copied, 0, identifiers, start, copied.length);
+        return endEntry(start + copied.length);
+    }
+
+    /**
+     * Returns the number of identifiers of an entry.
+     *
+     * @param entry the number of the entry.
+     * @return the number of PubMed identifiers.
+     */
+    public int size(int entry) {
+        return offsets[entry + 1] - offsets[entry];
+    }
+
+    /**
+     * Returns one identifier of an entry.
+     *
+     * @param entry the number of the entry.
+     * @param index the index of the identifier within the entry.
+     * @return the PubMed identifier.
+     */
+    public int get(int entry, int index) {
+        return identifiers[offsets[entry] + index];
+    }
+
+    /**
+     * Returns a copy of the identifiers of an entry.
+     *
+     * @param entry the number of the entry.
+     * @return a new array with the PubMed identifiers.
+     */
+    public int[] get(int entry) {
+        return Arrays.copyOfRange(identifiers, offsets[entry], offsets[entry + 1]);
+    }
+
+    /**
+     * Adds the identifiers of an entry to a set.
+     *
+     * @param entry the number of the entry.
+     * @param set the IntSet to add the identifiers to.
+     */
+    public void addTo(int entry, IntSet set) {
+        for (int i = offsets[entry]; i < offsets[entry + 1]; i++) {
+            set.add(identifiers[i]);
+        }
+    }
+
+    /**
+     * Returns the identifiers of an entry as a comma-separated list.
+     *
+     * @param entry the number of the entry.
+     * @return a String with comma-separated PubMed identifiers.
+     */
+    public String toString(int entry) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = offsets[entry]; i < offsets[entry + 1]; i++) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(identifiers[i]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Closes the current entry at an end offset.
+     *
+     * @param end the offset after the last identifier of the entry.
+     * @return the number of the closed entry.
+     */
+    private int endEntry(int end) {
+        if (entries + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[++entries] = end;
+        return entries - 1;
+    }
+
+    /**
+     * Grows the identifiers array to hold at least a number of identifiers.
+     *
+     * @param capacity the number of identifiers that should fit.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > identifiers.length) {
+            identifiers = Arrays.copyOf(identifiers, Math.max(capacity, identifiers.length * 2));
+        }
+    }
+
+    /**
+     * Checks if an array contains a value; entries are short, so a linear search is fastest.
+     *
+     * @param values the array to search.
+     * @param value the value to search for.
+     * @return true when the value is in the array.
+     */
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,299 @@
+package intercomp;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Class to compare the intersection of two types of interactions between two releases of an interactions file.
+ * <p>
+ * The intersection of typeA and typeB is determined in both releases. The genes and (numeric) PubMed identifiers of both intersections are sorted and merge-joined, so every gene or identifier is reported as added (only in the new release), removed (only in the old release) or kept (in both releases) without building any extra sets.
+ *
+ * @author Alexander
+ */
+public class ReleaseDiff {
+
+    /**
+     * Status of a gene or PubMed identifier in the new release compared to the old release.
+     */
+    public enum Status {
+        ADDED, REMOVED, KEPT
+    }
+
+    private final String typeA;
+    private final String typeB;
+    private final Gene[] oldGenes;
+    private final Gene[] newGenes;
+    private final int[] oldIdentifiers;
+    private final int[] newIdentifiers;
+    private final int[] geneCounts;
+    private final int[] identifierCounts;
+
+    /**
+     * Constructor for comparing the intersection of two types between an old and a new release.
+     *
+     * @param oldRelease the InteractionsFile of the old release.
+     * @param newRelease the InteractionsFile of the new release.
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     */
+    public ReleaseDiff(InteractionsFile oldRelease, InteractionsFile newRelease, String typeA, String typeB) {
+        this.typeA = typeA;
+        this.typeB = typeB;
+        Comparison oldComparison = Comparison.compare(typeA, typeB, InteractionComperator.Side.B, oldRelease.getInteractions());
+        Comparison newComparison = Comparison.compare(typeA, typeB, InteractionComperator.Side.B, newRelease.getInteractions());
+        // A GeneSet is already sorted on the gene identifiers
+        oldGenes = oldComparison.getGenesIntersection().toArray(new Gene[0]);
+        newGenes = newComparison.getGenesIntersection().toArray(new Gene[0]);
+        oldIdentifiers = oldComparison.getIdentifiers();
+        newIdentifiers = newComparison.getIdentifiers();
+        geneCounts = new int[Status.values().length];
+        identifierCounts = new int[Status.values().length];
+        count();
+    }
+
+    /**
+     * Returns the first type of interactions that is compared.
+     *
+     * @return the first type of interactions.
+     */
+    public String getTypeA() {
+        return typeA;
+    }
+
+    /**
+     * Returns the second type of interactions that is compared.
+     *
+     * @return the second type of interactions.
+     */
+    public String getTypeB() {
+        return typeB;
+    }
+
+    /**
+     * Returns the number of genes in the intersection with a given status.
+     *
+     * @param status the Status of the genes to count.
+     * @return the number of genes that were added, removed or kept.
+     */
+    public int getGeneCount(Status status) {
+        return geneCounts[status.ordinal()];
+    }
+
+    /**
+     * Returns the number of PubMed identifiers of the intersection with a given status.
+     *
+     * @param status the Status of the identifiers to count.
+     * @return the number of PubMed identifiers that were added, removed or kept.
+     */
+    public int getIdentifierCount(Status status) {
+        return identifierCounts[status.ordinal()];
+    }
+
+    /**
+     * Returns a text summary of the number of added, removed and kept genes and PubMed identifiers.
+     *
+     * @return a String containing a text summary of the difference.
+     */
+    public String getStatsText() {
+        String stats = "";
+        for (Status status : Status.values()) {
+            stats = stats.concat(String.format("%-8s\t%d genes\t%d PMIDs\n", status.name().toLowerCase(), getGeneCount(status), getIdentifierCount(status)));
+        }
+        return stats.trim();
+    }
+
+    /**
+     * Exports the genes of both intersections with their status in a tab-delimited text file.
+     *
+     * @param path a String absolute path to a file.
+     * @throws FileNotFoundException when the file specified in 'path' can not be found.
+     * @throws IOException when there is a problem with IO in the file.
+     * @throws NullExportException when there are no genes in either release.
+     */
+    public void exportGenes(String path) throws FileNotFoundException, IOException, NullExportException {
+        if (oldGenes.length == 0 && newGenes.length == 0) {
+            throw new NullExportException("No genes to export!");
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(path))));
+        writeGenes(writer);
+        writer.close();
+    }
+
+    /**
+     * Exports the PubMed identifiers of both intersections with their status in a tab-delimited text file.
+     *
+     * @param path a String absolute path to a file.
+     * @throws FileNotFoundException when the file specified in 'path' can not be found.
+     * @throws IOException when there is a problem with IO in the file.
+     * @throws NullExportException when there are no PubMed identifiers in either release.
+     */
+    public void exportPubMed(String path) throws FileNotFoundException, IOException, NullExportException {
+        if (oldIdentifiers.length == 0 && newIdentifiers.length == 0) {
+            throw new NullExportException("No PubMed identifiers to export!");
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(path))));
+        writePubMed(writer);
+        writer.close();
+    }
+
+    /**
+     * Streams the genes of both intersections to a writer, one gene per line prefixed by its status.
+     *
+     * @param writer the Writer to write the genes to.
+     * @throws IOException when there is a problem writing to the writer.
+     */
+    public void writeGenes(Writer writer) throws IOException {
+        writer.write("#Status\tTax ID\tGene ID\tProduct accession version\tProduct name");
+        mergeGenes(writer);
+        writer.flush();
+    }
+
+    /**
+     * Streams the PubMed identifiers of both intersections to a writer, one identifier per line prefixed by its status.
+     *
+     * @param writer the Writer to write the identifiers to.
+     * @throws IOException when there is a problem writing to the writer.
+     */
+    public void writePubMed(Writer writer) throws IOException {
+        writer.write("#Status\tPubMed ID (PMID)");
+        mergeIdentifiers(writer);
+        writer.flush();
+    }
+
+    /**
+     * Counts the genes and PubMed identifiers of both releases per status.
+     */
+    private void count() {
+        for (int o = 0, n = 0; o < oldGenes.length || n < newGenes.length;) {
+            int order = geneOrder(o, n);
+            geneCounts[status(order).ordinal()]++;
+            o += order <= 0 ? 1 : 0;
+            n += order >= 0 ? 1 : 0;
+        }
+        for (int o = 0, n = 0; o < oldIdentifiers.length || n < newIdentifiers.length;) {
+            int order = identifierOrder(o, n);
+            identifierCounts[status(order).ordinal()]++;
+            o += order <= 0 ? 1 : 0;
+            n += order >= 0 ? 1 : 0;
+        }
+    }
+
+    /**
+     * Merge-joins the sorted genes of the old and new release and writes each gene with its status.
+     *
+     * @param writer the Writer to write to.
+     * @throws IOException when there is a problem writing to the writer.
+     */
+    private void mergeGenes(Writer writer) throws IOException {
+        for (int o = 0, n = 0; o < oldGenes.length || n < newGenes.length;) {
+            int order = geneOrder(o, n);
+            Gene gene = order <= 0 ? oldGenes[o] : newGenes[n];
+            writer.write('\n');
+            writer.write(status(order).name().toLowerCase());
+            writer.write('\t');
+            writer.write(gene.getTaxID());
+            writer.write('\t');
+            writer.write(gene.getGeneID());
+            writer.write('\t');
+            writer.write(gene.getAccessionVersion());
+            writer.write('\t');
+            writer.write(gene.getProductName());
+            o += order <= 0 ? 1 : 0;
+            n += order >= 0 ? 1 : 0;
+        }
+    }
+
+    /**
+     * Merge-joins the sorted PubMed identifiers of the old and new release and writes each identifier with its status.
+     *
+     * @param writer the Writer to write to.
+     * @throws IOException when there is a problem writing to the writer.
+     */
+    private void mergeIdentifiers(Writer writer) throws IOException {
+        for (int o = 0, n = 0; o < oldIdentifiers.length || n < newIdentifiers.length;) {
+            int order = identifierOrder(o, n);
+            writer.write('\n');
+            writer.write(status(order).name().toLowerCase());
+            writer.write('\t');
+            writer.write(Integer.toString(order <= 0 ? oldIdentifiers[o] : newIdentifiers[n]));
+            o += order <= 0 ? 1 : 0;
+            n += order >= 0 ? 1 : 0;
+        }
+    }
+
+    /**
+     * Compares the next old and new gene of a merge-join.
+     *
+     * @param o the position in the old genes.
+     * @param n the position in the new genes.
+     * @return a negative number when only the old gene is next, a positive number when only the new gene is next, 0 when both are the same gene.
+     */
+    private int geneOrder(int o, int n) {
+        return o == oldGenes.length ? 1 : n == newGenes.length ? -1 : oldGenes[o].compareTo(newGenes[n]);
+    }
+
+    /**
+     * Compares the next old and new PubMed identifier of a merge-join.
+     *
+     * @param o the position in the old identifiers.
+     * @param n the position in the new identifiers.
+     * @return a negative number when only the old identifier is next, a positive number when only the new identifier is next, 0 when both are the same.
+     */
+    private int identifierOrder(int o, int n) {
+        return o == oldIdentifiers.length ? 1 : n == newIdentifiers.length ? -1 : Integer.compare(oldIdentifiers[o], newIdentifiers[n]);
+    }
+
+    /**
+     * Returns the status of the next element of a merge-join.
+     *
+     * @param order the result of geneOrder or identifierOrder.
+     * @return REMOVED when only the old release has it, ADDED when only the new release has it, KEPT when both have it.
+     */
+    private static Status status(int order) {
+        return order < 0 ? Status.REMOVED : order > 0 ? Status.ADDED : Status.KEPT;
+    }
+
+    /**
+     * Compares the intersection of two types between two releases and exports the difference.
+     * <p>
+     * Expects the paths to the old and the new release, the two types of interactions, and optionally the paths to export the genes and PubMed identifiers to. Without export paths only the summary is printed.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.err.println("Usage: ReleaseDiff <old file> <new file> <typeA> <typeB> [genes export] [PubMed export]");
+            System.exit(2);
+        }
+        try {
+            InteractionsFile oldRelease = new InteractionsFile(args[0], InteractionsFile.exceedsMemory(args[0]));
+            InteractionsFile newRelease = new InteractionsFile(args[1], InteractionsFile.exceedsMemory(args[1]));
+            ReleaseDiff diff = new ReleaseDiff(oldRelease, newRelease, args[2], args[3]);
+            System.out.println(diff.getStatsText());
+            if (args.length > 4) {
+                diff.exportGenes(args[4]);
+            }
+            if (args.length > 5) {
+                diff.exportPubMed(args[5]);
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Specified file not found");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("There was a problem reading or writing a file");
+            System.exit(1);
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("The specified file has not the correct format");
+            System.exit(1);
+        } catch (NullExportException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
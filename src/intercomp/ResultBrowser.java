@@ -0,0 +1,151 @@
+package intercomp;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Set;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+/**
+ * Window for browsing the genes in the intersection of a comparison.
+ * <p>
+ * Shows the genes in a table backed by a GeneTableModel, so only the visible rows are read. Clicking a column header sorts on that column, typing in the filter field hides the genes that do not contain the text, and typing in the find field jumps to the next gene whose identifier or product name starts with the text.
+ *
+ * @author Alexander
+ */
+public class ResultBrowser extends JFrame {
+
+    private static final int FILTER_DELAY = 250;
+
+    private final GeneTableModel model;
+    private final JTable table;
+    private final JTextField fieldFilter;
+    private final JTextField fieldFind;
+    private final JLabel labelStatus;
+    private final Timer filterTimer;
+
+    /**
+     * Creates a new window showing the genes of an intersection.
+     *
+     * @param typeA the first type of interactions of the comparison.
+     * @param typeB the second type of interactions of the comparison.
+     * @param genes a Set of Gene objects in the intersection.
+     */
+    public ResultBrowser(String typeA, String typeB, Set<Gene> genes) {
+        model = new GeneTableModel(genes);
+        table = new JTable(model);
+        fieldFilter = new JTextField(20);
+        fieldFind = new JTextField(20);
+        labelStatus = new JLabel();
+        filterTimer = new Timer(FILTER_DELAY, (ActionEvent e) -> {
+            model.setFilter(fieldFilter.getText().trim());
+            updateStatus();
+        });
+        filterTimer.setRepeats(false);
+
+        setTitle(String.format("Genes in %s and %s", typeA, typeB));
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setFillsViewportHeight(true);
+
+        JPanel panelSearch = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        panelSearch.add(new JLabel("Filter:"));
+        panelSearch.add(fieldFilter);
+        panelSearch.add(new JLabel("Find:"));
+        panelSearch.add(fieldFind);
+        panelSearch.add(labelStatus);
+        getContentPane().add(panelSearch, BorderLayout.NORTH);
+        getContentPane().add(new JScrollPane(table), BorderLayout.CENTER);
+
+        addListeners();
+        updateStatus();
+        setSize(800, 600);
+        setLocationRelativeTo(null);
+    }
+
+    /**
+     * Adds the listeners for sorting, filtering and finding.
+     */
+    private void addListeners() {
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.columnAtPoint(e.getPoint());
+                if (column >= 0) {
+                    model.sortBy(table.convertColumnIndexToModel(column));
+                    updateStatus();
+                }
+            }
+        });
+        model.addTableModelListener(e -> updateStatus());
+        fieldFilter.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                filterTimer.restart();
+            }
+        });
+        fieldFind.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                find(Math.max(0, table.getSelectedRow()));
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                find(0);
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                find(0);
+            }
+        });
+        // Enter in the find field jumps to the next match
+        fieldFind.addActionListener(e -> find(table.getSelectedRow() + 1));
+    }
+
+    /**
+     * Selects and scrolls to the first row from a starting row that matches the text in the find field.
+     *
+     * @param from the index of the row to start searching from.
+     */
+    private void find(int from) {
+        int row = model.find(fieldFind.getText().trim(), from);
+        if (row >= 0) {
+            table.setRowSelectionInterval(row, row);
+            table.scrollRectToVisible(table.getCellRect(row, 0, true));
+        } else {
+            table.clearSelection();
+        }
+    }
+
+    /**
+     * Shows the number of visible genes and whether the rows are being updated.
+     */
+    private void updateStatus() {
+        String status = String.format("%d of %d genes", model.getRowCount(), model.getTotalCount());
+        labelStatus.setText(model.isUpdating() ? status + " (updating...)" : status);
+    }
+
+}
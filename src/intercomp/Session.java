@@ -0,0 +1,167 @@
+package intercomp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+/**
+ * Class to remember the recently opened interaction files, the last comparison and whether duplicate interactions are collapsed between runs of the application.
+ * <p>
+ * The values are stored in the user preferences of the platform (e.g. the registry on Windows or a file in the home directory on other systems), so nothing has to be configured and a failing store never stops the application.
+ *
+ * @author Alexander
+ */
+public class Session {
+
+    /**
+     * The maximum number of recently opened files that is remembered.
+     */
+    public static final int MAX_RECENT = 5;
+
+    private static final String RECENT = "recent.";
+    private static final String TYPE_A = "last.typeA";
+    private static final String TYPE_B = "last.typeB";
+    private static final String SIDE = "last.side";
+    private static final String COLLAPSE = "collapse";
+
+    private final Preferences preferences;
+
+    /**
+     * Constructor for the session of the current user.
+     */
+    public Session() {
+        this(Preferences.userNodeForPackage(Session.class));
+    }
+
+    /**
+     * Constructor for a session stored in a specific preferences node.
+     *
+     * @param preferences the Preferences node to store the session in.
+     */
+    public Session(Preferences preferences) {
+        this.preferences = preferences;
+    }
+
+    /**
+     * Returns the recently opened files, the most recent first.
+     *
+     * @return a List of absolute paths to the recently opened files.
+     */
+    public List<String> getRecentFiles() {
+        List<String> recent = new ArrayList<>();
+        for (int i = 0; i < MAX_RECENT; i++) {
+            String path = preferences.get(RECENT + i, null);
+            if (path != null) {
+                recent.add(path);
+            }
+        }
+        return recent;
+    }
+
+    /**
+     * Returns the most recently opened file.
+     *
+     * @return the absolute path to the last opened file, or null when no file was opened before.
+     */
+    public String getLastFile() {
+        return preferences.get(RECENT + 0, null);
+    }
+
+    /**
+     * Remembers a file as the most recently opened file.
+     * <p>
+     * The file is moved to the front when it was opened before; the oldest file is forgotten when more than MAX_RECENT files are remembered.
+     *
+     * @param path the absolute path to the opened file.
+     */
+    public void addRecentFile(String path) {
+        List<String> recent = getRecentFiles();
+        recent.remove(path);
+        recent.add(0, path);
+        for (int i = 0; i < MAX_RECENT; i++) {
+            if (i < recent.size()) {
+                preferences.put(RECENT + i, recent.get(i));
+            } else {
+                preferences.remove(RECENT + i);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Returns the first type of interactions of the last comparison.
+     *
+     * @return the first type of the last comparison, or null when nothing was compared before.
+     */
+    public String getTypeA() {
+        return preferences.get(TYPE_A, null);
+    }
+
+    /**
+     * Returns the second type of interactions of the last comparison.
+     *
+     * @return the second type of the last comparison, or null when nothing was compared before.
+     */
+    public String getTypeB() {
+        return preferences.get(TYPE_B, null);
+    }
+
+    /**
+     * Returns the side of the interactions of the last comparison.
+     *
+     * @return the Side of the last comparison, or B when nothing was compared before.
+     */
+    public InteractionComperator.Side getSide() {
+        try {
+            return InteractionComperator.Side.valueOf(preferences.get(SIDE, InteractionComperator.Side.B.name()));
+        } catch (IllegalArgumentException e) {
+            return InteractionComperator.Side.B;
+        }
+    }
+
+    /**
+     * Remembers the types and side of a comparison as the last comparison.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param side the Side of the interactions that was compared.
+     */
+    public void setComparison(String typeA, String typeB, InteractionComperator.Side side) {
+        preferences.put(TYPE_A, typeA);
+        preferences.put(TYPE_B, typeB);
+        preferences.put(SIDE, side.name());
+        flush();
+    }
+
+    /**
+     * Returns whether duplicate interactions between the same two genes with the same type are collapsed when a file is opened.
+     *
+     * @return true when duplicate rows are merged into one interaction, false when nothing was chosen before.
+     */
+    public boolean isCollapse() {
+        return preferences.getBoolean(COLLAPSE, false);
+    }
+
+    /**
+     * Remembers whether duplicate interactions are collapsed when a file is opened.
+     *
+     * @param collapse true to merge duplicate rows into one interaction.
+     */
+    public void setCollapse(boolean collapse) {
+        preferences.putBoolean(COLLAPSE, collapse);
+        flush();
+    }
+
+    /**
+     * Writes the preferences to the store, ignoring a store that is not available.
+     */
+    private void flush() {
+        try {
+            preferences.flush();
+        } catch (BackingStoreException e) {
+            // The session is only remembered until the application exits
+        }
+    }
+
+}
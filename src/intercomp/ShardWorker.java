@@ -0,0 +1,271 @@
+package intercomp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Worker process that reads one byte range (shard) of an interactions file for a ShardedFile coordinator.
+ * <p>
+ * The worker connects to the coordinator, reads the lines that start in its byte range and numbers the genes it finds in a local dictionary. It sends the dictionary and, for every type, a BitSet of the local ordinals of the first and of the second genes, which the coordinator remaps and merges. Afterwards it keeps only the local ordinals and PubMed entries of its rows, and answers requests for the PubMed identifiers linked to a set of genes until the coordinator closes the connection.
+ * <p>
+ * Messages are written with DataOutputStream: strings as modified UTF-8, BitSets as their long words.
+ *
+ * @author Alexander
+ */
+public class ShardWorker {
+
+    /**
+     * Request for the PubMed identifiers linked to a set of genes.
+     */
+    static final byte PUBMED = 'P';
+
+    /**
+     * Request to stop the worker.
+     */
+    static final byte QUIT = 'Q';
+
+    private final Map<Gene, Integer> ordinals;
+    private final List<Gene> genes;
+    private final Map<String, BitSet[]> types;
+    private final PubMedTable pubmedTable;
+    private final int[] ends;
+    private int[] genesA;
+    private int[] genesB;
+    private int[] entries;
+    private int rowCount;
+
+    /**
+     * Constructor for a worker that reads the lines starting in a byte range of an interactions file.
+     *
+     * @param path the path to the interactions file.
+     * @param start the offset of the first byte of the shard.
+     * @param end the offset after the last byte of the shard.
+     * @throws IOException when the file can not be read.
+     * @throws IndexOutOfBoundsException when a line does not have the format of an interactions file.
+     */
+    ShardWorker(String path, long start, long end) throws IOException, IndexOutOfBoundsException {
+        ordinals = new HashMap<>();
+        genes = new ArrayList<>();
+        types = new LinkedHashMap<>();
+        pubmedTable = new PubMedTable();
+        ends = new int[InteractionsFile.COLUMNS];
+        genesA = new int[1024];
+        genesB = new int[1024];
+        entries = new int[1024];
+        // Start one byte early, so a line that starts exactly at 'start' is not skipped as the end of the previous line
+        long position = Math.max(0, start - 1);
+        FileInputStream in = new FileInputStream(path);
+        in.getChannel().position(position);
+        try (LineReader file = new LineReader(in)) {
+            String line;
+            if (start > 0) {
+                file.readLine();
+            }
+            while ((line = file.readLine()) != null && position + file.getOffset() < end) {
+                if (!line.startsWith("#") && !line.isEmpty()) {
+                    add(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the genes, type and PubMed identifiers of one row to the shard, finding the values with InteractionsFile.split like a loaded file does.
+     *
+     * @param line the tab-delimited row.
+     * @throws IndexOutOfBoundsException when the row has less than 12 values.
+     */
+    private void add(String line) throws IndexOutOfBoundsException {
+        InteractionsFile.split(line, ends);
+        int a = ordinal(new Gene(InteractionsFile.value(line, ends, 1), InteractionsFile.value(line, ends, 0), InteractionsFile.value(line, ends, 2), InteractionsFile.value(line, ends, 3)));
+        int b = ordinal(new Gene(InteractionsFile.value(line, ends, 6), InteractionsFile.value(line, ends, 5), InteractionsFile.value(line, ends, 7), InteractionsFile.value(line, ends, 8)));
+        String type = InteractionsFile.value(line, ends, 4);
+        BitSet[] sides = types.get(type);
+        if (sides == null) {
+            sides = new BitSet[]{new BitSet(), new BitSet()};
+            types.put(type, sides);
+        }
+        sides[0].set(a);
+        sides[1].set(b);
+        if (rowCount == entries.length) {
+            genesA = Arrays.copyOf(genesA, rowCount * 2);
+            genesB = Arrays.copyOf(genesB, rowCount * 2);
+            entries = Arrays.copyOf(entries, rowCount * 2);
+        }
+        genesA[rowCount] = a;
+        genesB[rowCount] = b;
+        entries[rowCount] = pubmedTable.add(line, ends[8] + 1, ends[9]);
+        rowCount++;
+    }
+
+    /**
+     * Returns the local ordinal of a gene, adding the gene to the dictionary if it is new.
+     *
+     * @param gene the Gene to look up.
+     * @return the local ordinal of the gene.
+     */
+    private int ordinal(Gene gene) {
+        Integer ordinal = ordinals.get(gene);
+        if (ordinal == null) {
+            ordinal = genes.size();
+            ordinals.put(gene, ordinal);
+            genes.add(gene);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Writes the number of rows, the dictionary and the BitSets of every type of the shard.
+     *
+     * @param out the DataOutputStream to the coordinator.
+     * @throws IOException when the stream can not be written.
+     */
+    void writeShard(DataOutputStream out) throws IOException {
+        out.writeInt(rowCount);
+        out.writeInt(genes.size());
+        for (Gene gene : genes) {
+            out.writeUTF(gene.getGeneID());
+            out.writeUTF(gene.getTaxID());
+            out.writeUTF(gene.getAccessionVersion());
+            out.writeUTF(gene.getProductName());
+        }
+        out.writeInt(types.size());
+        for (Map.Entry<String, BitSet[]> type : types.entrySet()) {
+            out.writeUTF(type.getKey());
+            writeBits(out, type.getValue()[0]);
+            writeBits(out, type.getValue()[1]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Collects the PubMed identifiers of the rows linked to a set of genes, like Comparison does for its intersection.
+     *
+     * @param side the Side of the rows whose gene is checked.
+     * @param linked the BitSet with the local ordinals of the genes.
+     * @return a sorted int array with the unique PubMed identifiers.
+     */
+    int[] getIdentifiers(InteractionComperator.Side side, BitSet linked) {
+        IntSet collected = new IntSet();
+        for (int r = 0; r < rowCount; r++) {
+            boolean isLinked = side == InteractionComperator.Side.A ? linked.get(genesA[r])
+                    : side == InteractionComperator.Side.B ? linked.get(genesB[r])
+                    : linked.get(genesA[r]) || linked.get(genesB[r]);
+            if (isLinked) {
+                pubmedTable.addTo(entries[r], collected);
+            }
+        }
+        return collected.toSortedArray();
+    }
+
+    /**
+     * Writes a BitSet as the number of its words followed by the words.
+     *
+     * @param out the DataOutputStream to write to.
+     * @param bits the BitSet to write.
+     * @throws IOException when the stream can not be written.
+     */
+    static void writeBits(DataOutputStream out, BitSet bits) throws IOException {
+        long[] words = bits.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads a BitSet written by writeBits.
+     *
+     * @param in the DataInputStream to read from.
+     * @return the BitSet that was read.
+     * @throws IOException when the stream can not be read.
+     */
+    static BitSet readBits(DataInputStream in) throws IOException {
+        long[] words = new long[in.readInt()];
+        for (int w = 0; w < words.length; w++) {
+            words[w] = in.readLong();
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Writes an int array as its length followed by the values.
+     *
+     * @param out the DataOutputStream to write to.
+     * @param values the int array to write.
+     * @throws IOException when the stream can not be written.
+     */
+    static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Reads an int array written by writeInts.
+     *
+     * @param in the DataInputStream to read from.
+     * @return the int array that was read.
+     * @throws IOException when the stream can not be read.
+     */
+    static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * Runs a worker for a ShardedFile coordinator.
+     * <p>
+     * Expects the path to the interactions file, the first and the end offset of the shard, the host and port of the coordinator and the number of the shard. The worker only talks to the coordinator; errors are printed and end the worker with exit code 1, which the coordinator notices as a closed connection.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length != 6) {
+            System.err.println("Usage: ShardWorker <interactions file> <start> <end> <coordinator host> <coordinator port> <shard>");
+            System.exit(2);
+        }
+        try (Socket socket = new Socket(args[3], Integer.parseInt(args[4]))) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out.writeInt(Integer.parseInt(args[5]));
+            out.flush();
+            ShardWorker worker = new ShardWorker(args[0], Long.parseLong(args[1]), Long.parseLong(args[2]));
+            worker.writeShard(out);
+            for (byte request = in.readByte(); request == PUBMED; request = in.readByte()) {
+                InteractionComperator.Side side = InteractionComperator.Side.valueOf(in.readUTF());
+                writeInts(out, worker.getIdentifiers(side, readBits(in)));
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // The coordinator closed the connection
+        } catch (IOException e) {
+            System.err.println("Shard " + args[5] + ": " + e.getMessage());
+            System.exit(1);
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("Shard " + args[5] + ": the specified file has not the correct format");
+            System.exit(1);
+        } catch (NumberFormatException e) {
+            System.err.println("The offsets, port and shard should be numbers");
+            System.exit(2);
+        }
+    }
+
+}
@@ -0,0 +1,477 @@
+package intercomp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Coordinator that reads an interactions file with several worker processes and merges their results.
+ * <p>
+ * The file is split into byte ranges (shards) of about the same size, and a ShardWorker JVM is started for every shard. Every worker connects back to a server socket on the loopback address, reads the lines that start in its range and sends its gene dictionary and a BitSet of local gene ordinals per type and side. The coordinator remaps the local ordinals to one global dictionary and ORs the BitSets of all shards, so it only keeps the genes and the bitmaps, and the workers keep the rows. A comparison is made from the merged bitmaps with the usual Comparison set logic; the PubMed identifiers of its intersection are asked from all workers at the same time and united.
+ * <p>
+ * Workers only need the file at the same path and a connection to the coordinator, so they can also be started by hand on other hosts with the arguments of ShardWorker.
+ *
+ * @author Alexander
+ */
+public class ShardedFile implements Closeable {
+
+    /**
+     * The number of milliseconds to wait for a worker to connect before checking if the workers are still running.
+     */
+    private static final int ACCEPT_INTERVAL = 1000;
+
+    /**
+     * The number of milliseconds all workers together get to connect, which includes starting their JVMs.
+     */
+    private static final long CONNECT_TIMEOUT = 60000;
+
+    private final String path;
+    private final List<Process> processes;
+    private final Shard[] shards;
+    private final Map<Gene, Integer> ordinals;
+    private final List<Gene> genes;
+    private final Map<String, BitSet[]> types;
+    private int rowCount;
+
+    /**
+     * Constructor for reading an interactions file with a number of local worker processes.
+     *
+     * @param path a absolute path to a file containing the interactions.
+     * @param workers the number of worker processes and shards.
+     * @throws FileNotFoundException when the specified file on the path is not found.
+     * @throws IOException when a worker can not be started, fails or can not be reached.
+     * @throws IllegalArgumentException when there are no workers.
+     */
+    public ShardedFile(String path, int workers) throws FileNotFoundException, IOException, IllegalArgumentException {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is needed");
+        }
+        File file = new File(path);
+        if (!file.isFile()) {
+            throw new FileNotFoundException(path);
+        }
+        this.path = path;
+        this.processes = new ArrayList<>();
+        this.shards = new Shard[workers];
+        this.ordinals = new HashMap<>();
+        this.genes = new ArrayList<>();
+        this.types = new HashMap<>();
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            long length = file.length();
+            for (int w = 0; w < workers; w++) {
+                ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), ShardWorker.class.getName(), path,
+                        Long.toString(length * w / workers), Long.toString(length * (w + 1) / workers), server.getInetAddress().getHostAddress(), Integer.toString(server.getLocalPort()), Integer.toString(w));
+                builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+                builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+                processes.add(builder.start());
+            }
+            accept(server);
+            merge();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits until every worker has connected and says which shard it reads.
+     * <p>
+     * Worker w reads shard w, so while waiting the coordinator gives up as soon as the process of a shard that has not connected is no longer running, whatever its exit code, or when the workers did not all connect within CONNECT_TIMEOUT.
+     *
+     * @param server the ServerSocket the workers connect to.
+     * @throws IOException when a worker stops before it connects or the workers do not connect in time.
+     */
+    private void accept(ServerSocket server) throws IOException {
+        server.setSoTimeout(ACCEPT_INTERVAL);
+        long deadline = System.nanoTime() + CONNECT_TIMEOUT * 1000000;
+        int connected = 0;
+        while (connected < shards.length) {
+            try {
+                Shard shard = new Shard(server.accept());
+                if (shard.number < 0 || shard.number >= shards.length || shards[shard.number] != null) {
+                    shard.socket.close();
+                    throw new IOException("Unexpected connection for shard " + shard.number);
+                }
+                shards[shard.number] = shard;
+                connected++;
+            } catch (SocketTimeoutException e) {
+                for (int w = 0; w < shards.length; w++) {
+                    Process process = processes.get(w);
+                    if (shards[w] == null && !process.isAlive()) {
+                        throw new IOException("The worker of shard " + w + " stopped with exit code " + process.exitValue() + " before it connected");
+                    }
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IOException((shards.length - connected) + " of " + shards.length + " workers did not connect within " + CONNECT_TIMEOUT / 1000 + " seconds");
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the results of all shards in parallel and merges them into the global dictionary and bitmaps, in the order of the shards.
+     *
+     * @throws IOException when the result of a shard can not be read.
+     */
+    private void merge() throws IOException {
+        ExecutorService readers = Executors.newFixedThreadPool(shards.length);
+        try {
+            List<Future<Void>> reads = new ArrayList<>();
+            for (Shard shard : shards) {
+                reads.add(readers.submit(() -> {
+                    shard.read();
+                    return null;
+                }));
+            }
+            for (int s = 0; s < shards.length; s++) {
+                await(reads.get(s));
+                Shard shard = shards[s];
+                rowCount += shard.rows;
+                shard.remap = new int[shard.genes.size()];
+                for (int g = 0; g < shard.remap.length; g++) {
+                    shard.remap[g] = ordinal(shard.genes.get(g));
+                }
+                shard.genes = null;
+                for (Map.Entry<String, BitSet[]> type : shard.types.entrySet()) {
+                    BitSet[] sides = types.get(type.getKey());
+                    if (sides == null) {
+                        sides = new BitSet[]{new BitSet(), new BitSet()};
+                        types.put(type.getKey(), sides);
+                    }
+                    for (int side = 0; side < 2; side++) {
+                        BitSet local = type.getValue()[side];
+                        for (int g = local.nextSetBit(0); g >= 0; g = local.nextSetBit(g + 1)) {
+                            sides[side].set(shard.remap[g]);
+                        }
+                    }
+                }
+                shard.types = null;
+            }
+        } finally {
+            readers.shutdown();
+        }
+    }
+
+    /**
+     * Waits for a read of a shard, passing on its IOException.
+     *
+     * @param read the Future of the read.
+     * @throws IOException when the read failed.
+     */
+    private static void await(Future<?> read) throws IOException {
+        try {
+            read.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the workers", e);
+        }
+    }
+
+    /**
+     * Returns the global ordinal of a gene, adding the gene to the dictionary if it is new.
+     *
+     * @param gene the Gene to look up.
+     * @return the global ordinal of the gene.
+     */
+    private int ordinal(Gene gene) {
+        Integer ordinal = ordinals.get(gene);
+        if (ordinal == null) {
+            ordinal = genes.size();
+            ordinals.put(gene, ordinal);
+            genes.add(gene);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Returns the path of the file with interactions.
+     *
+     * @return a String absolute path to a file containing the interactions.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the number of shards the file was split into.
+     *
+     * @return the number of worker processes.
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the number of interaction lines in the file.
+     *
+     * @return the number of rows that were read by all workers.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of distinct genes in the file.
+     *
+     * @return the number of genes in the global dictionary.
+     */
+    public int getGeneCount() {
+        return genes.size();
+    }
+
+    /**
+     * Returns a set with all types of interactions in the interactions file.
+     *
+     * @return a String Set with all the types of interactions in the file.
+     */
+    public Set<String> getTypes() {
+        return Collections.unmodifiableSet(types.keySet());
+    }
+
+    /**
+     * Compares two types of interactions using the merged bitmaps of all shards.
+     * <p>
+     * The resulting Comparison holds the genes of both types for every side, but no interactions; its PubMed identifiers are collected from the workers by getIdentifiers and exportPubMed.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param side the Side of the interactions to compare.
+     * @return the Comparison of the two types.
+     */
+    public Comparison compare(String typeA, String typeB, InteractionComperator.Side side) {
+        BitSet[] sidesA = types.get(typeA);
+        BitSet[] sidesB = types.get(typeB);
+        return new Comparison(typeA, typeB, side, Collections.<Interaction>emptyList(),
+                Comparison.group(toGenes(sidesA, 0), toGenes(sidesA, 1)), Comparison.group(toGenes(sidesB, 0), toGenes(sidesB, 1)));
+    }
+
+    /**
+     * Returns the genes of one side of a type as a GeneSet.
+     *
+     * @param sides the BitSets of both sides of the type, or null when the type is not in the file.
+     * @param side 0 for the first genes, 1 for the second genes.
+     * @return a GeneSet with the genes of the side.
+     */
+    private GeneSet toGenes(BitSet[] sides, int side) {
+        if (sides == null) {
+            return GeneSet.EMPTY;
+        }
+        List<Gene> selected = new ArrayList<>(sides[side].cardinality());
+        for (int g = sides[side].nextSetBit(0); g >= 0; g = sides[side].nextSetBit(g + 1)) {
+            selected.add(genes.get(g));
+        }
+        return GeneSet.of(selected);
+    }
+
+    /**
+     * Returns all the unique PubMed identifiers linked to the genes in the intersection of a comparison of this file.
+     * <p>
+     * Every worker gets the intersection in its own local ordinals and collects the identifiers of its rows at the same time as the other workers.
+     *
+     * @param comparison a Comparison made by compare.
+     * @return a sorted int array containing all unique PubMed identifiers belonging to the genes in the intersection.
+     * @throws IOException when a worker can not be reached.
+     */
+    public synchronized int[] getIdentifiers(Comparison comparison) throws IOException {
+        BitSet intersection = new BitSet(genes.size());
+        for (Gene gene : comparison.getGenesIntersection()) {
+            Integer ordinal = ordinals.get(gene);
+            if (ordinal != null) {
+                intersection.set(ordinal);
+            }
+        }
+        for (Shard shard : shards) {
+            BitSet local = new BitSet(shard.remap.length);
+            for (int g = 0; g < shard.remap.length; g++) {
+                if (intersection.get(shard.remap[g])) {
+                    local.set(g);
+                }
+            }
+            shard.out.writeByte(ShardWorker.PUBMED);
+            shard.out.writeUTF(comparison.getSide().name());
+            ShardWorker.writeBits(shard.out, local);
+            shard.out.flush();
+        }
+        IntSet collected = new IntSet();
+        for (Shard shard : shards) {
+            try {
+                for (int id : ShardWorker.readInts(shard.in)) {
+                    collected.add(id);
+                }
+            } catch (EOFException e) {
+                throw new IOException("Worker of shard " + shard.number + " stopped", e);
+            }
+        }
+        return collected.toSortedArray();
+    }
+
+    /**
+     * Exports all PubMed identifiers associated with the genes in the intersection of a comparison in a line-delimited text file.
+     *
+     * @param comparison a Comparison made by compare.
+     * @param exportPath a String absolute path to a file.
+     * @throws FileNotFoundException when the file specified in 'exportPath' can not be created.
+     * @throws IOException when a worker can not be reached or the file can not be written.
+     * @throws NullExportException when there are no PubMed identifiers to export.
+     */
+    public void exportPubMed(Comparison comparison, String exportPath) throws FileNotFoundException, IOException, NullExportException {
+        int[] ids = getIdentifiers(comparison);
+        if (comparison.getGenesIntersection().isEmpty() || ids.length == 0) {
+            throw new NullExportException("No PubMed identifiers to export!");
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(exportPath))));
+        InteractionComperator.writeIdentifiers(ids, writer);
+        writer.close();
+    }
+
+    /**
+     * Stops all workers and closes their connections.
+     */
+    @Override
+    public synchronized void close() {
+        for (Shard shard : shards) {
+            if (shard != null) {
+                try {
+                    shard.out.writeByte(ShardWorker.QUIT);
+                    shard.out.flush();
+                    shard.socket.close();
+                } catch (IOException e) {
+                    // The worker is stopped below
+                }
+            }
+        }
+        for (Process process : processes) {
+            process.destroy();
+        }
+    }
+
+    /**
+     * The connection to one worker and its result until it is merged.
+     */
+    private static class Shard {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final int number;
+        private int rows;
+        private List<Gene> genes;
+        private Map<String, BitSet[]> types;
+        private int[] remap;
+
+        Shard(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.number = in.readInt();
+        }
+
+        /**
+         * Reads the number of rows, the dictionary and the BitSets of every type sent by the worker.
+         *
+         * @throws IOException when the connection is closed before the result is read.
+         */
+        void read() throws IOException {
+            try {
+                readResult();
+            } catch (EOFException e) {
+                throw new IOException("Worker of shard " + number + " stopped before sending its result", e);
+            }
+        }
+
+        /**
+         * Reads the result of the worker from the connection.
+         *
+         * @throws IOException when the connection can not be read.
+         */
+        private void readResult() throws IOException {
+            rows = in.readInt();
+            int count = in.readInt();
+            genes = new ArrayList<>(count);
+            for (int g = 0; g < count; g++) {
+                String geneID = in.readUTF();
+                String taxID = in.readUTF();
+                genes.add(new Gene(geneID, taxID, in.readUTF(), in.readUTF()));
+            }
+            count = in.readInt();
+            types = new HashMap<>();
+            for (int t = 0; t < count; t++) {
+                String type = in.readUTF();
+                types.put(type, new BitSet[]{ShardWorker.readBits(in), ShardWorker.readBits(in)});
+            }
+        }
+    }
+
+    /**
+     * Compares two types of interactions in an interactions file with several worker processes.
+     * <p>
+     * Expects the path to the interactions file, the number of workers, two types of interactions, the side (A, B or EITHER), the path to export the genes to, and optionally the path to export the PubMed identifiers to.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length != 6 && args.length != 7) {
+            System.err.println("Usage: ShardedFile <interactions file> <workers> <typeA> <typeB> <A|B|EITHER> <genes export file> [PubMed export file]");
+            System.exit(2);
+        }
+        int workers = 0;
+        InteractionComperator.Side side = null;
+        try {
+            workers = Integer.parseInt(args[1]);
+            if (workers < 1) {
+                throw new IllegalArgumentException("At least one worker is needed");
+            }
+            side = InteractionComperator.Side.valueOf(args[4].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("The number of workers should be a number and the side A, B or EITHER");
+            System.exit(2);
+        }
+        try (ShardedFile file = new ShardedFile(args[0], workers)) {
+            Comparison comparison = file.compare(args[2], args[3], side);
+            comparison.exportGenes(args[5]);
+            if (args.length == 7) {
+                file.exportPubMed(comparison, args[6]);
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Specified file not found");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("There was a problem with a worker or a file: " + e.getMessage());
+            System.exit(1);
+        } catch (NullExportException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,318 @@
+package intercomp;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Class to find the types of interactions whose genes are most similar to the genes of another type.
+ * <p>
+ * Every type in a GeneSetIndex gets a MinHash signature of SIGNATURE values; the chance that two signatures have the same value at a position is the Jaccard similarity of both sets of genes. The signatures are split into bands of ROWS values and every band is put in a hash table (locality-sensitive hashing), so types that share a band are likely similar. A search counts the bands every other type shares with the searched type, which estimates their similarity, and only verifies the best candidates exactly with the BitSets of the index, so it does not have to compare against every type.
+ * <p>
+ * With the default of one value per band, a type with a Jaccard similarity J is a candidate with a chance of 1 - (1 - J)^SIGNATURE, so even types that share a few percent of their genes are found. Types that are less similar than the verified candidates can be missed.
+ *
+ * @author Alexander
+ */
+public class SimilaritySearch {
+
+    /**
+     * The number of values in the MinHash signature of a type.
+     */
+    public static final int SIGNATURE = 128;
+
+    /**
+     * The default number of bands the signatures are split into.
+     */
+    public static final int BANDS = 128;
+
+    /**
+     * The default number of signature values in a band.
+     */
+    public static final int ROWS = 1;
+
+    /**
+     * The number of candidates that are verified exactly per requested type, at least.
+     */
+    private static final int VERIFY_PER_RESULT = 4;
+
+    private final GeneSetIndex index;
+    private final List<String> types;
+    private final Map<String, Integer> typeNumbers;
+    private final int[][] signatures;
+    private final int bands;
+    private final int rows;
+    private final List<Map<Long, List<Integer>>> buckets;
+
+    /**
+     * Constructor for a search over all types of an index with the default bands.
+     *
+     * @param index the GeneSetIndex with the genes of every type.
+     */
+    public SimilaritySearch(GeneSetIndex index) {
+        this(index, BANDS, ROWS);
+    }
+
+    /**
+     * Constructor for a search over all types of an index.
+     * <p>
+     * More rows per band find fewer, more similar candidates; more bands find more candidates. The signatures of the types are made in parallel.
+     *
+     * @param index the GeneSetIndex with the genes of every type.
+     * @param bands the number of bands.
+     * @param rows the number of signature values per band; bands * rows can be at most SIGNATURE.
+     * @throws IllegalArgumentException when the bands do not fit in the signature.
+     */
+    public SimilaritySearch(GeneSetIndex index, int bands, int rows) throws IllegalArgumentException {
+        if (bands < 1 || rows < 1 || bands * rows > SIGNATURE) {
+            throw new IllegalArgumentException("The bands should fit in a signature of " + SIGNATURE + " values");
+        }
+        this.index = index;
+        this.types = index.getTypes();
+        this.typeNumbers = new HashMap<>();
+        this.bands = bands;
+        this.rows = rows;
+        for (int t = 0; t < types.size(); t++) {
+            typeNumbers.put(types.get(t), t);
+        }
+        signatures = new int[types.size()][];
+        IntStream.range(0, types.size()).parallel().forEach(t -> signatures[t] = signature(index.genes(types.get(t))));
+        buckets = new ArrayList<>();
+        for (int b = 0; b < bands; b++) {
+            Map<Long, List<Integer>> bucket = new HashMap<>();
+            for (int t = 0; t < types.size(); t++) {
+                if (!index.genes(types.get(t)).isEmpty()) {
+                    bucket.computeIfAbsent(bandKey(signatures[t], b), key -> new ArrayList<>()).add(t);
+                }
+            }
+            buckets.add(bucket);
+        }
+    }
+
+    /**
+     * Returns the index the types are searched in.
+     *
+     * @return the GeneSetIndex of this search.
+     */
+    public GeneSetIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the types that share the most genes with a type, measured by their Jaccard similarity.
+     * <p>
+     * The candidates are ordered on the number of bands they share with the type and the first VERIFY_PER_RESULT * k candidates are verified exactly.
+     *
+     * @param type the type of interactions to find similar types for.
+     * @param k the maximum number of types to return.
+     * @return a List of at most k Match objects of other types that share genes with the type, most similar first.
+     */
+    public List<Match> search(String type, int k) {
+        List<Match> matches = new ArrayList<>();
+        Integer number = typeNumbers.get(type);
+        if (number == null) {
+            return matches;
+        }
+        final int[] hits = new int[types.size()];
+        List<Integer> candidates = new ArrayList<>();
+        for (int b = 0; b < bands; b++) {
+            List<Integer> bucket = buckets.get(b).get(bandKey(signatures[number], b));
+            if (bucket != null) {
+                for (int t : bucket) {
+                    if (hits[t]++ == 0 && t != number) {
+                        candidates.add(t);
+                    }
+                }
+            }
+        }
+        candidates.sort((x, y) -> Integer.compare(hits[y], hits[x]));
+        if (candidates.size() > VERIFY_PER_RESULT * k) {
+            candidates = candidates.subList(0, VERIFY_PER_RESULT * k);
+        }
+        BitSet genes = index.genes(type);
+        int size = genes.cardinality();
+        for (int t : candidates) {
+            BitSet other = index.genes(types.get(t));
+            int shared = intersection(genes, other);
+            if (shared > 0) {
+                int otherSize = other.cardinality();
+                matches.add(new Match(types.get(t), otherSize, shared, (double) shared / (size + otherSize - shared)));
+            }
+        }
+        matches.sort((x, y) -> x.getJaccard() != y.getJaccard() ? Double.compare(y.getJaccard(), x.getJaccard()) : Integer.compare(y.getShared(), x.getShared()));
+        return matches.size() > k ? new ArrayList<>(matches.subList(0, k)) : matches;
+    }
+
+    /**
+     * Makes the MinHash signature of a set of gene ordinals.
+     * <p>
+     * The hash functions are derived from two hashes of the ordinal (h1 + i * h2), so every gene is hashed only once.
+     *
+     * @param genes the BitSet with the ordinals of the genes.
+     * @return an int array with the minimum of every hash function over the genes.
+     */
+    private static int[] signature(BitSet genes) {
+        int[] signature = new int[SIGNATURE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int g = genes.nextSetBit(0); g >= 0; g = genes.nextSetBit(g + 1)) {
+            long hash = mix(g);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < SIGNATURE; i++) {
+                int value = h1 + i * h2;
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Returns the hash table key of one band of a signature.
+     *
+     * @param signature the MinHash signature.
+     * @param band the number of the band.
+     * @return a long combining the values of the band.
+     */
+    private long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int r = band * rows; r < (band + 1) * rows; r++) {
+            key = key * 0x9E3779B97F4A7C15L + signature[r];
+        }
+        return key;
+    }
+
+    /**
+     * Mixes an ordinal into a 64-bit hash (the MurmurHash3 finalizer).
+     *
+     * @param ordinal the ordinal of a gene.
+     * @return the 64-bit hash.
+     */
+    private static long mix(long ordinal) {
+        long hash = ordinal * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Counts the ordinals in both BitSets by walking the set bits of the shorter set, without copying.
+     *
+     * @param a the first BitSet.
+     * @param b the second BitSet.
+     * @return the number of ordinals in both sets.
+     */
+    private static int intersection(BitSet a, BitSet b) {
+        if (a.length() > b.length()) {
+            BitSet swap = a;
+            a = b;
+            b = swap;
+        }
+        int shared = 0;
+        for (int g = a.nextSetBit(0); g >= 0; g = a.nextSetBit(g + 1)) {
+            if (b.get(g)) {
+                shared++;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * A type of interactions that was found by a search, with its exact overlap.
+     */
+    public static class Match {
+
+        private final String type;
+        private final int size;
+        private final int shared;
+        private final double jaccard;
+
+        Match(String type, int size, int shared, double jaccard) {
+            this.type = type;
+            this.size = size;
+            this.shared = shared;
+            this.jaccard = jaccard;
+        }
+
+        /**
+         * Returns the type of interactions that was found.
+         *
+         * @return the similar type.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Returns the number of genes of the type that was found.
+         *
+         * @return the number of genes of the similar type.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the number of genes shared with the searched type.
+         *
+         * @return the exact size of the intersection.
+         */
+        public int getShared() {
+            return shared;
+        }
+
+        /**
+         * Returns the Jaccard similarity with the searched type.
+         *
+         * @return the exact Jaccard similarity between 0 and 1.
+         */
+        public double getJaccard() {
+            return jaccard;
+        }
+    }
+
+    /**
+     * Prints the types that are most similar to a type in an interactions file.
+     * <p>
+     * Expects the path to the interactions file, the type of interactions and optionally the number of types to print (default 10). Prints a tab-delimited line per similar type.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: SimilaritySearch <interactions file> <type> [k]");
+            System.exit(2);
+        }
+        try {
+            int k = args.length == 3 ? Integer.parseInt(args[2]) : 10;
+            InteractionsFile file = new InteractionsFile(args[0], InteractionsFile.exceedsMemory(args[0]));
+            SimilaritySearch search = new SimilaritySearch(file.getGeneSetIndex());
+            System.out.println("#Type\tGenes\tShared genes\tJaccard");
+            for (Match match : search.search(args[1], k)) {
+                System.out.println(String.format("%s\t%d\t%d\t%.4f", match.getType(), match.getSize(), match.getShared(), match.getJaccard()));
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Specified file not found");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("There was a problem reading the file");
+            System.exit(1);
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("The specified file has not the correct format");
+            System.exit(1);
+        } catch (NumberFormatException e) {
+            System.err.println("The number of types should be a number");
+            System.exit(2);
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package intercomp;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Helper class to locate rows in an interactions file and copy them to another file without parsing or formatting them.
+ * <p>
+ * The location of a row is packed in a single long: the byte offset of the row in the upper bits and its length (including the line terminator) in the lower LENGTH_BITS bits. Rows are copied by sorting their locations, joining rows that follow each other in the file into one range, and transferring every range directly from the file channel of the interactions file to the output channel.
+ *
+ * @author Alexander
+ */
+final class SourceRows {
+
+    /**
+     * The location of a row that is not known, e.g. because the row is longer than the maximum length.
+     */
+    static final long UNKNOWN = -1;
+
+    private static final int LENGTH_BITS = 24;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+
+    private SourceRows() {
+    }
+
+    /**
+     * Packs the offset and the length of a row into one long.
+     *
+     * @param offset the byte offset of the row in the file.
+     * @param length the number of bytes of the row, including the line terminator.
+     * @return the packed location, or UNKNOWN when the row is too long or too far into the file to be packed.
+     */
+    static long pack(long offset, int length) {
+        if (length > LENGTH_MASK || offset >= 1L << (63 - LENGTH_BITS)) {
+            return UNKNOWN;
+        }
+        return offset << LENGTH_BITS | length;
+    }
+
+    /**
+     * Returns the offset of a packed row location.
+     *
+     * @param source the packed location.
+     * @return the byte offset of the row.
+     */
+    static long offset(long source) {
+        return source >>> LENGTH_BITS;
+    }
+
+    /**
+     * Returns the length of a packed row location.
+     *
+     * @param source the packed location.
+     * @return the number of bytes of the row, including the line terminator.
+     */
+    static int length(long source) {
+        return (int) (source & LENGTH_MASK);
+    }
+
+    /**
+     * Copies a header and a set of rows from an interactions file to a channel, in the order of the file.
+     * <p>
+     * A new line is added after the last row when the file does not end with one.
+     *
+     * @param path the path to the interactions file.
+     * @param headerLength the number of bytes at the start of the file to copy as header.
+     * @param sources the packed locations of the rows to copy; the array is sorted.
+     * @param count the number of locations in the array to copy.
+     * @param out the WritableByteChannel to copy the rows to.
+     * @return the number of rows that were copied.
+     * @throws IOException when the interactions file can not be read or the channel can not be written.
+     */
+    static int copy(String path, long headerLength, long[] sources, int count, WritableByteChannel out) throws IOException {
+        Arrays.sort(sources, 0, count);
+        int rows = 0;
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            FileChannel in = file.getChannel();
+            transfer(in, 0, headerLength, out);
+            long rangeStart = -1;
+            long rangeEnd = -1;
+            for (int i = 0; i < count; i++) {
+                long offset = offset(sources[i]);
+                long end = offset + length(sources[i]);
+                if (offset < rangeEnd) {
+                    // The same row was linked twice
+                    continue;
+                }
+                if (offset != rangeEnd) {
+                    transfer(in, rangeStart, rangeEnd, out);
+                    rangeStart = offset;
+                }
+                rangeEnd = end;
+                rows++;
+            }
+            transfer(in, rangeStart, rangeEnd, out);
+            if (rangeEnd > 0) {
+                ByteBuffer last = ByteBuffer.allocate(1);
+                in.read(last, rangeEnd - 1);
+                if (last.get(0) != '\n') {
+                    out.write(ByteBuffer.wrap(new byte[]{'\n'}));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Copies a range of bytes from a file channel to another channel.
+     *
+     * @param in the FileChannel to copy from.
+     * @param start the offset of the first byte; nothing is copied when it is negative.
+     * @param end the offset after the last byte.
+     * @param out the WritableByteChannel to copy to.
+     * @throws IOException when the range can not be copied.
+     */
+    private static void transfer(FileChannel in, long start, long end, WritableByteChannel out) throws IOException {
+        long position = start;
+        while (position >= 0 && position < end) {
+            long copied = in.transferTo(position, end - position, out);
+            if (copied <= 0) {
+                throw new IOException("The interactions file is shorter than when it was loaded");
+            }
+            position += copied;
+        }
+    }
+
+    /**
+     * Copies a header and a set of rows from an interactions file to a new file.
+     *
+     * @param path the path to the interactions file.
+     * @param headerLength the number of bytes at the start of the file to copy as header.
+     * @param sources the packed locations of the rows to copy; the array is sorted.
+     * @param count the number of locations in the array to copy.
+     * @param exportPath the path to the file to write.
+     * @return the number of rows that were copied.
+     * @throws IOException when a file can not be read or written.
+     */
+    static int export(String path, long headerLength, long[] sources, int count, String exportPath) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(exportPath)) {
+            return copy(path, headerLength, sources, count, out.getChannel());
+        }
+    }
+
+}
@@ -0,0 +1,370 @@
+package intercomp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Comparison of two types of interactions that reads the interactions once as a stream, without keeping them in memory.
+ * <p>
+ * Only the rows of the two types are split into values, and only their genes are kept, so the memory that is needed grows with the genes of the two types instead of with the file. The PubMed identifiers of the intersection are linked through interactions of any type, which can come before the genes of the intersection are known. When the interactions are read from a file, the file is read a second time for them; when they are read from a stream, e.g. stdin, the genes and PubMed identifiers of every row are spilled to a temporary file during the first pass, and that file is read instead.
+ *
+ * @author Alexander
+ */
+public class StreamingComparison implements Closeable {
+
+    /**
+     * The number of tab-delimited values that is needed to read the genes, type and PubMed identifiers of a row.
+     */
+    private static final int COLUMNS = 10;
+
+    private final String typeA;
+    private final String typeB;
+    private final String path;
+    private final Set<Gene> firstA;
+    private final Set<Gene> secondA;
+    private final Set<Gene> firstB;
+    private final Set<Gene> secondB;
+    private final int[] tabs;
+    private File spill;
+    private int rowCount;
+
+    /**
+     * Constructor for a comparison of two types in a file with interactions.
+     *
+     * @param path a absolute path to a file containing the interactions.
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @throws FileNotFoundException when the specified file on the path is not found.
+     * @throws IOException when there is something wrong with IO of the file.
+     * @throws IndexOutOfBoundsException when the file format is wrong. The format should be 11 tab-delimited values for each line, except lines that start with '#'.
+     */
+    public StreamingComparison(String path, String typeA, String typeB) throws FileNotFoundException, IOException, IndexOutOfBoundsException {
+        this.typeA = typeA;
+        this.typeB = typeB;
+        this.path = path;
+        this.firstA = new HashSet<>();
+        this.secondA = new HashSet<>();
+        this.firstB = new HashSet<>();
+        this.secondB = new HashSet<>();
+        this.tabs = new int[COLUMNS];
+        try (LineReader reader = new LineReader(path)) {
+            read(reader, null);
+        }
+    }
+
+    /**
+     * Constructor for a comparison of two types in a stream of interactions, e.g. stdin.
+     *
+     * @param in the InputStream with the interactions, which is read to the end but not closed.
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param spill true to spill the genes and PubMed identifiers of every row to a temporary file, so the PubMed identifiers of the intersection can be collected.
+     * @throws IOException when the stream can not be read or the temporary file can not be written.
+     * @throws IndexOutOfBoundsException when the format is wrong. The format should be 11 tab-delimited values for each line, except lines that start with '#'.
+     */
+    public StreamingComparison(InputStream in, String typeA, String typeB, boolean spill) throws IOException, IndexOutOfBoundsException {
+        this.typeA = typeA;
+        this.typeB = typeB;
+        this.path = null;
+        this.firstA = new HashSet<>();
+        this.secondA = new HashSet<>();
+        this.firstB = new HashSet<>();
+        this.secondB = new HashSet<>();
+        this.tabs = new int[COLUMNS];
+        LineReader reader = new LineReader(in);
+        if (!spill) {
+            read(reader, null);
+            return;
+        }
+        this.spill = File.createTempFile("intercomp-stream", ".spill");
+        this.spill.deleteOnExit();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.spill), 1 << 16))) {
+            read(reader, out);
+        } catch (IOException | IndexOutOfBoundsException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads all rows, keeps the genes of the rows of both types and optionally spills the genes and PubMed identifiers of every row.
+     *
+     * @param reader the LineReader of the interactions.
+     * @param out the DataOutputStream of the spill file, or null to not spill.
+     * @throws IOException when the interactions can not be read or the spill can not be written.
+     * @throws IndexOutOfBoundsException when a row has less than ten values.
+     */
+    private void read(LineReader reader, DataOutputStream out) throws IOException, IndexOutOfBoundsException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("#") || line.isEmpty()) {
+                continue;
+            }
+            split(line);
+            rowCount++;
+            boolean isA = isType(line, typeA);
+            boolean isB = isType(line, typeB);
+            if (isA || isB) {
+                Gene geneA = new Gene(value(line, 1), value(line, 0), value(line, 2), value(line, 3));
+                Gene geneB = new Gene(value(line, 6), value(line, 5), value(line, 7), value(line, 8));
+                if (isA) {
+                    firstA.add(geneA);
+                    secondA.add(geneB);
+                }
+                if (isB) {
+                    firstB.add(geneA);
+                    secondB.add(geneB);
+                }
+            }
+            if (out != null) {
+                out.writeUTF(value(line, 1));
+                out.writeUTF(value(line, 6));
+                out.writeUTF(value(line, 9));
+            }
+        }
+    }
+
+    /**
+     * Finds the tabs that end the first values of a line.
+     *
+     * @param line the line to split.
+     * @throws IndexOutOfBoundsException when the line has less than ten values.
+     */
+    private void split(String line) throws IndexOutOfBoundsException {
+        int tab = -1;
+        for (int c = 0; c < COLUMNS; c++) {
+            tab = line.indexOf('\t', tab + 1);
+            if (tab < 0) {
+                if (c < COLUMNS - 1) {
+                    throw new IndexOutOfBoundsException("Line with " + (c + 1) + " values");
+                }
+                tab = line.length();
+            }
+            tabs[c] = tab;
+        }
+    }
+
+    /**
+     * Returns one value of the last line that was split.
+     *
+     * @param line the line that was split.
+     * @param column the index of the value.
+     * @return the value in the column.
+     */
+    private String value(String line, int column) {
+        return line.substring(column == 0 ? 0 : tabs[column - 1] + 1, tabs[column]);
+    }
+
+    /**
+     * Checks the type of the last line that was split, without making a String of it.
+     *
+     * @param line the line that was split.
+     * @param type the type of interactions to check.
+     * @return true when the line has the type.
+     */
+    private boolean isType(String line, String type) {
+        int start = tabs[3] + 1;
+        return tabs[4] - start == type.length() && line.startsWith(type, start);
+    }
+
+    /**
+     * Returns the first type of interactions.
+     *
+     * @return the first type of interactions.
+     */
+    public String getTypeA() {
+        return typeA;
+    }
+
+    /**
+     * Returns the second type of interactions.
+     *
+     * @return the second type of interactions.
+     */
+    public String getTypeB() {
+        return typeB;
+    }
+
+    /**
+     * Returns the number of interaction lines that were read.
+     *
+     * @return the number of rows.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the comparison of the two types on one side.
+     * <p>
+     * The Comparison holds the genes of both types but no interactions; its PubMed identifiers are collected by getIdentifiers and exportPubMed.
+     *
+     * @param side the Side of the interactions to compare.
+     * @return the Comparison of the two types.
+     */
+    public Comparison getComparison(InteractionComperator.Side side) {
+        return new Comparison(typeA, typeB, side, Collections.<Interaction>emptyList(),
+                Comparison.group(GeneSet.of(firstA), GeneSet.of(secondA)), Comparison.group(GeneSet.of(firstB), GeneSet.of(secondB)));
+    }
+
+    /**
+     * Returns all the unique PubMed identifiers linked to the genes in the intersection of a comparison, reading the file or the spill again.
+     *
+     * @param comparison a Comparison made by getComparison.
+     * @return a sorted int array containing all unique PubMed identifiers belonging to the genes in the intersection.
+     * @throws IOException when the file or the spill can not be read.
+     * @throws IllegalStateException when the interactions were read from a stream without spilling them.
+     */
+    public int[] getIdentifiers(Comparison comparison) throws IOException, IllegalStateException {
+        if (path == null && spill == null) {
+            throw new IllegalStateException("The interactions were not spilled");
+        }
+        Set<String> intersection = new HashSet<>();
+        for (Gene gene : comparison.getGenesIntersection()) {
+            intersection.add(gene.getGeneID());
+        }
+        IntSet collected = new IntSet();
+        if (intersection.isEmpty()) {
+            return collected.toSortedArray();
+        }
+        InteractionComperator.Side side = comparison.getSide();
+        if (path != null) {
+            try (LineReader reader = new LineReader(path)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith("#") && !line.isEmpty()) {
+                        split(line);
+                        if (isLinked(side, intersection, value(line, 1), value(line, 6))) {
+                            PubMedTable.parseTo(value(line, 9), collected);
+                        }
+                    }
+                }
+            }
+        } else {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spill), 1 << 16))) {
+                for (int r = 0; r < rowCount; r++) {
+                    String geneA = in.readUTF();
+                    String geneB = in.readUTF();
+                    String pubmed = in.readUTF();
+                    if (isLinked(side, intersection, geneA, geneB)) {
+                        PubMedTable.parseTo(pubmed, collected);
+                    }
+                }
+            } catch (EOFException e) {
+                throw new IOException("The spill file is incomplete", e);
+            }
+        }
+        return collected.toSortedArray();
+    }
+
+    /**
+     * Checks if a row is linked to a gene in the intersection through the compared side, like Comparison does.
+     *
+     * @param side the compared Side.
+     * @param intersection the identifiers of the genes in the intersection.
+     * @param geneA the identifier of the first gene of the row.
+     * @param geneB the identifier of the second gene of the row.
+     * @return true when the gene of the side, or either gene, is in the intersection.
+     */
+    private static boolean isLinked(InteractionComperator.Side side, Set<String> intersection, String geneA, String geneB) {
+        switch (side) {
+            case A:
+                return intersection.contains(geneA);
+            case B:
+                return intersection.contains(geneB);
+            default:
+                return intersection.contains(geneA) || intersection.contains(geneB);
+        }
+    }
+
+    /**
+     * Exports all PubMed identifiers associated with the genes in the intersection of a comparison in the line-delimited format of Comparison.exportPubMed.
+     *
+     * @param comparison a Comparison made by getComparison.
+     * @param exportPath a String absolute path to a file.
+     * @throws FileNotFoundException when the file specified in 'exportPath' can not be created.
+     * @throws IOException when there is a problem reading the interactions or writing the export.
+     * @throws NullExportException when there are no PubMed identifiers to export.
+     */
+    public void exportPubMed(Comparison comparison, String exportPath) throws FileNotFoundException, IOException, NullExportException {
+        int[] ids = getIdentifiers(comparison);
+        if (comparison.getGenesIntersection().isEmpty() || ids.length == 0) {
+            throw new NullExportException("No PubMed identifiers to export!");
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(exportPath))));
+        InteractionComperator.writeIdentifiers(ids, writer);
+        writer.close();
+    }
+
+    /**
+     * Deletes the spill file, if there is one.
+     */
+    @Override
+    public void close() {
+        if (spill != null) {
+            spill.delete();
+            spill = null;
+        }
+    }
+
+    /**
+     * Compares two types of interactions in a file or in stdin in one pass, prints the sizes of the Venn-diagram and exports the genes in the intersection.
+     * <p>
+     * Expects the path to the interactions file or '-' for stdin, two types of interactions, the side (A, B or EITHER), the path to export the genes to, and optionally the path to export the PubMed identifiers to.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length != 5 && args.length != 6) {
+            System.err.println("Usage: StreamingComparison <interactions file or -> <typeA> <typeB> <A|B|EITHER> <genes export file> [PubMed export file]");
+            System.exit(2);
+        }
+        InteractionComperator.Side side = null;
+        try {
+            side = InteractionComperator.Side.valueOf(args[3].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("The side should be A, B or EITHER");
+            System.exit(2);
+        }
+        boolean pubmed = args.length == 6;
+        try (StreamingComparison stream = args[0].equals("-")
+                ? new StreamingComparison(System.in, args[1], args[2], pubmed)
+                : new StreamingComparison(args[0], args[1], args[2])) {
+            Comparison comparison = stream.getComparison(side);
+            System.out.println("#Type A\tType B\tIntersection");
+            System.out.println(comparison.getGenesA().size() + "\t" + comparison.getGenesB().size() + "\t" + comparison.getGenesIntersection().size());
+            comparison.exportGenes(args[4]);
+            if (pubmed) {
+                stream.exportPubMed(comparison, args[5]);
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Specified file not found");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("There was a problem reading or writing a file");
+            System.exit(1);
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("The specified file has not the correct format");
+            System.exit(1);
+        } catch (NullExportException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,516 @@
+package intercomp;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Index of the interactions of every type sorted on the time of their last update.
+ * <p>
+ * The last update of an interaction is parsed to seconds since the epoch when the interaction is made (the file has no time zone, so the times are read as UTC). Per type the index keeps the sorted times and the ordinals of both genes in a GeneSetIndex as primitive arrays, and for an in-memory file also the interactions themselves, so the interactions of a type in a time range are found with two binary searches. A spilled file can only be read sequentially, so its interactions in a range are collected in one pass over the file.
+ * <p>
+ * The trend of two types is made by sweeping both sorted timelines once: genes are added to the sets of both types in the order of their updates and the size of the intersection is recorded at the end of every year, instead of comparing every year again.
+ *
+ * @author Alexander
+ */
+public class TimelineIndex {
+
+    /**
+     * The time of an interaction whose last update could not be parsed. It is earlier than any other time.
+     */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final long MINUTE_BIAS = 1L << 30;
+
+    private final GeneSetIndex index;
+    private final List<Interaction> interactions;
+    private final Map<String, Block> types;
+
+    /**
+     * Constructor for an index of all interactions in a list, in one pass over the list.
+     *
+     * @param index the GeneSetIndex with the ordinals of all genes of the interactions.
+     * @param interactions a List of Interaction objects sorted on type, like the list of an InteractionsFile.
+     */
+    public TimelineIndex(GeneSetIndex index, List<Interaction> interactions) {
+        this.index = index;
+        this.interactions = interactions;
+        this.types = new HashMap<>();
+        boolean keep = interactions instanceof RandomAccess;
+        Builder builder = null;
+        for (Interaction i : interactions) {
+            if (builder == null || !i.getType().equals(builder.type)) {
+                if (builder != null) {
+                    types.put(builder.type, builder.build());
+                }
+                builder = new Builder(i.getType(), keep);
+            }
+            builder.add(i);
+        }
+        if (builder != null) {
+            types.put(builder.type, builder.build());
+        }
+    }
+
+    /**
+     * Parses the last update timestamp of an interaction, e.g. "2015/08/16 20:24", to seconds since the epoch.
+     * <p>
+     * The date can be separated by '/' or '-'; the time of day is optional.
+     *
+     * @param lastUpdate the timestamp as it is written in the interactions file.
+     * @return the seconds since the epoch in UTC, or UNKNOWN when the timestamp can not be parsed.
+     */
+    public static long parse(String lastUpdate) {
+        if (lastUpdate == null || lastUpdate.length() < 10) {
+            return UNKNOWN;
+        }
+        int year = digits(lastUpdate, 0, 4);
+        int month = digits(lastUpdate, 5, 2);
+        int day = digits(lastUpdate, 8, 2);
+        int hour = lastUpdate.length() >= 16 ? digits(lastUpdate, 11, 2) : 0;
+        int minute = lastUpdate.length() >= 16 ? digits(lastUpdate, 14, 2) : 0;
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return UNKNOWN;
+        }
+        try {
+            return LocalDate.of(year, month, day).toEpochDay() * 86400 + hour * 3600 + minute * 60;
+        } catch (DateTimeException e) {
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * Returns the time at the start of a year.
+     *
+     * @param year the year.
+     * @return the seconds since the epoch of January 1 00:00 UTC of the year.
+     */
+    public static long startOfYear(int year) {
+        return LocalDate.of(year, 1, 1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Returns the year of a time.
+     *
+     * @param time the seconds since the epoch.
+     * @return the year of the time in UTC.
+     */
+    public static int yearOf(long time) {
+        return LocalDate.ofEpochDay(Math.floorDiv(time, 86400)).getYear();
+    }
+
+    /**
+     * Parses a number of decimal digits in a String.
+     *
+     * @param text the String to parse.
+     * @param start the index of the first digit.
+     * @param length the number of digits.
+     * @return the value of the digits, or -1 when one of them is not a digit.
+     */
+    private static int digits(String text, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    /**
+     * Returns the index that the ordinals of the genes refer to.
+     *
+     * @return the GeneSetIndex with the genes of every type of interaction.
+     */
+    public GeneSetIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the number of interactions of a type that were last updated in a time range.
+     *
+     * @param type the type of interactions.
+     * @param from the first time of the range in seconds since the epoch, Long.MIN_VALUE for no lower bound.
+     * @param to the time after the range, Long.MAX_VALUE for no upper bound.
+     * @return the number of interactions of the type in the range.
+     */
+    public int count(String type, long from, long to) {
+        Block block = types.get(type);
+        return block == null ? 0 : block.search(to) - block.search(from);
+    }
+
+    /**
+     * Returns the interactions of two types that were last updated in a time range.
+     * <p>
+     * For an in-memory file the result is a view of the sorted interactions of both types; for a spilled file the interactions in the range are read from disk.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param from the first time of the range in seconds since the epoch, Long.MIN_VALUE for no lower bound.
+     * @param to the time after the range, Long.MAX_VALUE for no upper bound.
+     * @return a List of the Interaction objects of both types in the range.
+     */
+    public List<Interaction> getInteractions(String typeA, String typeB, long from, long to) {
+        List<Interaction> window = new ArrayList<>();
+        if (!(interactions instanceof RandomAccess)) {
+            for (Interaction i : interactions) {
+                if ((i.getType().equals(typeA) || i.getType().equals(typeB)) && i.getUpdated() >= from && i.getUpdated() < to) {
+                    window.add(i);
+                }
+            }
+            return window;
+        }
+        for (String type : typeA.equals(typeB) ? new String[]{typeA} : new String[]{typeA, typeB}) {
+            Block block = types.get(type);
+            if (block != null) {
+                window.addAll(Arrays.asList(block.interactions).subList(block.search(from), block.search(to)));
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Returns the interactions of every type that were last updated in a time range, in the order of the file.
+     *
+     * @param from the first time of the range in seconds since the epoch, Long.MIN_VALUE for no lower bound.
+     * @param to the time after the range, Long.MAX_VALUE for no upper bound.
+     * @return a List of the Interaction objects in the range, the list of the file itself when the range is unbounded.
+     */
+    public List<Interaction> getInteractions(long from, long to) {
+        if (from == Long.MIN_VALUE && to == Long.MAX_VALUE) {
+            return interactions;
+        }
+        List<Interaction> window = new ArrayList<>();
+        for (Interaction i : interactions) {
+            if (i.getUpdated() >= from && i.getUpdated() < to) {
+                window.add(i);
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Compares two types of interactions as if the file held only the interactions that were last updated in a time range.
+     * <p>
+     * The sets of genes are made of the interactions of both types in the range, and the PubMed identifiers and source rows of the intersection are linked through the interactions of every type in the range, like a comparison of the whole file does. An unbounded range therefore gives the same Comparison as InteractionsFile.compare.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param side the Side of the interactions to compare.
+     * @param from the first time of the range in seconds since the epoch, Long.MIN_VALUE for no lower bound.
+     * @param to the time after the range, Long.MAX_VALUE for no upper bound.
+     * @return the Comparison of the interactions in the range.
+     */
+    public Comparison compare(String typeA, String typeB, InteractionComperator.Side side, long from, long to) {
+        return Comparison.compare(typeA, typeB, side, getInteractions(from, to));
+    }
+
+    /**
+     * Returns the size of the sets of genes of two types and their intersection at the end of every year of a time range.
+     * <p>
+     * The sets grow with every interaction in the range, in the order of their updates; the point of a year counts all interactions from the start of the range to the end of that year. Interactions whose update is unknown are left out. Both timelines are swept once, so the trend costs about as much as one comparison.
+     *
+     * @param typeA the first type of interactions.
+     * @param typeB the second type of interactions.
+     * @param side the Side of the interactions to compare.
+     * @param from the first time of the range in seconds since the epoch, Long.MIN_VALUE for no lower bound.
+     * @param to the time after the range, Long.MAX_VALUE for no upper bound.
+     * @return a List with a TrendPoint for every year from the first to the last update in the range.
+     */
+    public List<TrendPoint> trend(String typeA, String typeB, InteractionComperator.Side side, long from, long to) {
+        List<TrendPoint> trend = new ArrayList<>();
+        Block blockA = types.get(typeA);
+        Block blockB = types.get(typeB);
+        if (blockA == null || blockB == null) {
+            return trend;
+        }
+        long start = Math.max(from, UNKNOWN + 1);
+        int a = blockA.search(start);
+        int b = blockB.search(start);
+        int endA = blockA.search(to);
+        int endB = blockB.search(to);
+        if (a == endA && b == endB) {
+            return trend;
+        }
+        BitSet genesA = new BitSet();
+        BitSet genesB = new BitSet();
+        int[] counts = new int[4];
+        long first = Math.min(a < endA ? blockA.times[a] : Long.MAX_VALUE, b < endB ? blockB.times[b] : Long.MAX_VALUE);
+        int year = yearOf(first);
+        long yearEnd = startOfYear(year + 1);
+        while (a < endA || b < endB) {
+            boolean takeA = b == endB || (a < endA && blockA.times[a] <= blockB.times[b]);
+            long time = takeA ? blockA.times[a] : blockB.times[b];
+            while (time >= yearEnd) {
+                trend.add(new TrendPoint(year, counts[0], counts[1], counts[2], counts[3]));
+                year++;
+                yearEnd = startOfYear(year + 1);
+            }
+            if (takeA) {
+                addGenes(blockA, a++, side, genesA, genesB, counts, 0);
+            } else {
+                addGenes(blockB, b++, side, genesB, genesA, counts, 1);
+            }
+        }
+        trend.add(new TrendPoint(year, counts[0], counts[1], counts[2], counts[3]));
+        return trend;
+    }
+
+    /**
+     * Adds the linked genes of one interaction to the set of its type and updates the counts of the trend.
+     *
+     * @param block the Block of the interaction.
+     * @param position the position of the interaction in the block.
+     * @param side the Side of the interactions to compare.
+     * @param genes the BitSet with the genes of the type of the interaction.
+     * @param others the BitSet with the genes of the other type.
+     * @param counts the sizes of both sets, the intersection and the number of interactions.
+     * @param set 0 when the interaction belongs to the first type, 1 for the second type.
+     */
+    private static void addGenes(Block block, int position, InteractionComperator.Side side, BitSet genes, BitSet others, int[] counts, int set) {
+        if (side != InteractionComperator.Side.B) {
+            addGene(block.genesA[position], genes, others, counts, set);
+        }
+        if (side != InteractionComperator.Side.A) {
+            addGene(block.genesB[position], genes, others, counts, set);
+        }
+        counts[3]++;
+    }
+
+    private static void addGene(int ordinal, BitSet genes, BitSet others, int[] counts, int set) {
+        if (!genes.get(ordinal)) {
+            genes.set(ordinal);
+            counts[set]++;
+            if (others.get(ordinal)) {
+                counts[2]++;
+            }
+        }
+    }
+
+    /**
+     * The interactions of one type sorted on time.
+     */
+    private static class Block {
+
+        private final long[] times;
+        private final int[] genesA;
+        private final int[] genesB;
+        private final Interaction[] interactions;
+
+        Block(long[] times, int[] genesA, int[] genesB, Interaction[] interactions) {
+            this.times = times;
+            this.genesA = genesA;
+            this.genesB = genesB;
+            this.interactions = interactions;
+        }
+
+        /**
+         * Returns the position of the first interaction updated at or after a time.
+         *
+         * @param time the seconds since the epoch.
+         * @return the position in the block, the number of interactions when all are earlier.
+         */
+        int search(long time) {
+            int low = 0;
+            int high = times.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (times[middle] < time) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Collects the interactions of one type in the order of the file and sorts them on time.
+     */
+    private class Builder {
+
+        private final String type;
+        private final List<Interaction> kept;
+        private long[] times;
+        private int[] genesA;
+        private int[] genesB;
+        private int size;
+
+        Builder(String type, boolean keep) {
+            this.type = type;
+            this.kept = keep ? new ArrayList<>() : null;
+            this.times = new long[16];
+            this.genesA = new int[16];
+            this.genesB = new int[16];
+        }
+
+        void add(Interaction interaction) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                genesA = Arrays.copyOf(genesA, size * 2);
+                genesB = Arrays.copyOf(genesB, size * 2);
+            }
+            times[size] = interaction.getUpdated();
+            genesA[size] = index.getOrdinal(interaction.getGeneA());
+            genesB[size] = index.getOrdinal(interaction.getGeneB());
+            size++;
+            if (kept != null) {
+                kept.add(interaction);
+            }
+        }
+
+        /**
+         * Sorts the collected interactions on time, keeping the order of the file for equal times.
+         * <p>
+         * The times have a resolution of minutes, so the minute and the position of every interaction are packed in one long and sorted as primitives.
+         *
+         * @return the sorted Block.
+         */
+        Block build() {
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                long minute = times[i] == UNKNOWN ? 0 : Math.max(1, Math.min(Integer.MAX_VALUE, Math.floorDiv(times[i], 60) + MINUTE_BIAS));
+                keys[i] = minute << 32 | i;
+            }
+            Arrays.sort(keys);
+            long[] sortedTimes = new long[size];
+            int[] sortedA = new int[size];
+            int[] sortedB = new int[size];
+            Interaction[] sortedInteractions = kept == null ? null : new Interaction[size];
+            for (int i = 0; i < size; i++) {
+                int position = (int) keys[i];
+                sortedTimes[i] = times[position];
+                sortedA[i] = genesA[position];
+                sortedB[i] = genesB[position];
+                if (kept != null) {
+                    sortedInteractions[i] = kept.get(position);
+                }
+            }
+            return new Block(sortedTimes, sortedA, sortedB, sortedInteractions);
+        }
+    }
+
+    /**
+     * The sizes of the sets of genes of two types at the end of a year.
+     */
+    public static class TrendPoint {
+
+        private final int year;
+        private final int sizeA;
+        private final int sizeB;
+        private final int intersection;
+        private final int interactions;
+
+        TrendPoint(int year, int sizeA, int sizeB, int intersection, int interactions) {
+            this.year = year;
+            this.sizeA = sizeA;
+            this.sizeB = sizeB;
+            this.intersection = intersection;
+            this.interactions = interactions;
+        }
+
+        /**
+         * Returns the year of the point.
+         *
+         * @return the year.
+         */
+        public int getYear() {
+            return year;
+        }
+
+        /**
+         * Returns the number of genes of the first type at the end of the year.
+         *
+         * @return the size of the first set of genes.
+         */
+        public int getSizeA() {
+            return sizeA;
+        }
+
+        /**
+         * Returns the number of genes of the second type at the end of the year.
+         *
+         * @return the size of the second set of genes.
+         */
+        public int getSizeB() {
+            return sizeB;
+        }
+
+        /**
+         * Returns the number of genes of both types at the end of the year.
+         *
+         * @return the size of the intersection.
+         */
+        public int getIntersection() {
+            return intersection;
+        }
+
+        /**
+         * Returns the number of interactions of both types from the start of the range to the end of the year.
+         *
+         * @return the number of interactions that were swept.
+         */
+        public int getInteractions() {
+            return interactions;
+        }
+    }
+
+    /**
+     * Prints the trend of the overlap of two types of interactions year by year, optionally exporting the genes in the intersection of the whole range.
+     * <p>
+     * Expects the path to the interactions file, two types of interactions, the side (A, B or EITHER), the first and the last year of the range ('-' for no bound), and optionally the path to export the genes to. Prints a tab-delimited line per year.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length != 6 && args.length != 7) {
+            System.err.println("Usage: TimelineIndex <interactions file> <typeA> <typeB> <A|B|EITHER> <first year|-> <last year|-> [genes export file]");
+            System.exit(2);
+        }
+        try {
+            InteractionComperator.Side side = InteractionComperator.Side.valueOf(args[3].toUpperCase());
+            long from = args[4].equals("-") ? Long.MIN_VALUE : startOfYear(Integer.parseInt(args[4]));
+            long to = args[5].equals("-") ? Long.MAX_VALUE : startOfYear(Integer.parseInt(args[5]) + 1);
+            InteractionsFile file = new InteractionsFile(args[0], InteractionsFile.exceedsMemory(args[0]));
+            TimelineIndex timeline = file.getTimeline();
+            System.out.println("#Year\tGenes A\tGenes B\tIntersection\tInteractions");
+            for (TrendPoint point : timeline.trend(args[1], args[2], side, from, to)) {
+                System.out.println(point.getYear() + "\t" + point.getSizeA() + "\t" + point.getSizeB() + "\t" + point.getIntersection() + "\t" + point.getInteractions());
+            }
+            if (args.length == 7) {
+                timeline.compare(args[1], args[2], side, from, to).exportGenes(args[6]);
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Specified file not found");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("There was a problem reading or writing a file");
+            System.exit(1);
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("The specified file has not the correct format");
+            System.exit(1);
+        } catch (NumberFormatException | DateTimeException e) {
+            System.err.println("The years should be numbers or '-'");
+            System.exit(2);
+        } catch (IllegalArgumentException e) {
+            System.err.println("The side should be A, B or EITHER");
+            System.exit(2);
+        } catch (NullExportException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
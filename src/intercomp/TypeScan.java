@@ -0,0 +1,274 @@
+package intercomp;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Quick scan of the types of interactions in a file and the number of rows of every type, without parsing the rows.
+ * <p>
+ * The file is read as bytes. Of every line only the tabs before the type column are searched and the other fields are skipped; the bytes of the type are looked up in a small hash table of the types seen so far, so a String is only made the first time a type is found. This is much faster than loading the file, so the types can be shown while the interactions are still loaded. Lines that start with '#' are skipped, and lines that end before the value after the type are not counted; the full load reports them.
+ *
+ * @author Alexander
+ */
+public class TypeScan {
+
+    /**
+     * The index of the type column in a line of an interactions file.
+     */
+    private static final int TYPE_COLUMN = 4;
+
+    private final String path;
+    private final Map<String, Integer> counts;
+    private int rowCount;
+    private byte[][] keys;
+    private int[] hashes;
+    private int[] rows;
+    private int size;
+
+    /**
+     * Constructor for scanning the types of a file with interactions.
+     *
+     * @param path a absolute path to a file containing the interactions.
+     * @throws FileNotFoundException when the specified file on the path is not found.
+     * @throws IOException when there is something wrong with IO of the file.
+     * @throws CancellationException when the thread was interrupted during the scan.
+     */
+    public TypeScan(String path) throws FileNotFoundException, IOException {
+        this.path = path;
+        this.keys = new byte[64][];
+        this.hashes = new int[64];
+        this.rows = new int[64];
+        try (InputStream in = new FileInputStream(path)) {
+            scan(in);
+        }
+        Map<String, Integer> sorted = new TreeMap<>();
+        for (int k = 0; k < keys.length; k++) {
+            if (keys[k] != null) {
+                sorted.put(new String(keys[k], StandardCharsets.UTF_8), rows[k]);
+            }
+        }
+        this.counts = Collections.unmodifiableMap(sorted);
+        this.keys = null;
+    }
+
+    /**
+     * Reads the stream and counts the rows of every type.
+     *
+     * @param in the InputStream of the file.
+     * @throws IOException when the stream can not be read.
+     */
+    private void scan(InputStream in) throws IOException {
+        byte[] buffer = new byte[1 << 20];
+        byte[] type = new byte[64];
+        int typeLength = 0;
+        int column = 0;
+        boolean lineStart = true;
+        boolean skip = false;
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("The scan was cancelled");
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+                if (b == '\n') {
+                    lineStart = true;
+                    skip = false;
+                    column = 0;
+                    typeLength = 0;
+                } else if (skip) {
+                    // The type of this line was counted, or the line is a comment
+                } else if (lineStart && b == '#') {
+                    skip = true;
+                } else if (b == '\t') {
+                    lineStart = false;
+                    if (column == TYPE_COLUMN) {
+                        count(type, typeLength);
+                        rowCount++;
+                        skip = true;
+                    }
+                    column++;
+                } else {
+                    lineStart = false;
+                    if (column == TYPE_COLUMN) {
+                        if (typeLength == type.length) {
+                            type = Arrays.copyOf(type, typeLength * 2);
+                        }
+                        type[typeLength++] = b;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts a row of a type, adding the type to the hash table when it is new.
+     *
+     * @param type the buffer with the bytes of the type.
+     * @param length the number of bytes of the type.
+     */
+    private void count(byte[] type, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + type[i];
+        }
+        int mask = keys.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && equals(keys[slot], type, length)) {
+                rows[slot]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = Arrays.copyOf(type, length);
+        hashes[slot] = hash;
+        rows[slot] = 1;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Checks if a key holds the same bytes as the start of a buffer.
+     *
+     * @param key the bytes of a type in the table.
+     * @param type the buffer with the bytes of a type.
+     * @param length the number of bytes of the type in the buffer.
+     * @return true when the bytes are the same.
+     */
+    private static boolean equals(byte[] key, byte[] type, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != type[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the size of the hash table.
+     */
+    private void grow() {
+        byte[][] oldKeys = keys;
+        int[] oldHashes = hashes;
+        int[] oldRows = rows;
+        keys = new byte[oldKeys.length * 2][];
+        hashes = new int[keys.length];
+        rows = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int k = 0; k < oldKeys.length; k++) {
+            if (oldKeys[k] != null) {
+                int slot = (oldHashes[k] ^ (oldHashes[k] >>> 16)) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[k];
+                hashes[slot] = oldHashes[k];
+                rows[slot] = oldRows[k];
+            }
+        }
+    }
+
+    /**
+     * Returns the path of the file that was scanned.
+     *
+     * @return a String absolute path to a file containing the interactions.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the number of interaction lines that were counted.
+     *
+     * @return the number of rows with a type.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the types of interactions in the file.
+     *
+     * @return a sorted Set with all types of interactions.
+     */
+    public Set<String> getTypes() {
+        return counts.keySet();
+    }
+
+    /**
+     * Returns the number of rows of every type.
+     *
+     * @return a Map from every type to its number of rows, sorted on type.
+     */
+    public Map<String, Integer> getCounts() {
+        return counts;
+    }
+
+    /**
+     * Returns the number of rows of one type.
+     *
+     * @param type the type of interactions.
+     * @return the number of rows of the type, 0 when the type is not in the file.
+     */
+    public int getCount(String type) {
+        Integer count = counts.get(type);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Returns a text summary of the scan, with the number of rows and the number of rows of every type.
+     *
+     * @return a String with the summary.
+     */
+    public String getStatsText() {
+        StringBuilder stats = new StringBuilder();
+        stats.append("# Rows:                 \t").append(rowCount).append(" rows\n");
+        stats.append("# Types of interactions:\t").append(counts.size()).append(" interactions");
+        for (Map.Entry<String, Integer> type : counts.entrySet()) {
+            stats.append('\n').append(type.getKey()).append(":\t").append(type.getValue()).append(" rows");
+        }
+        return stats.toString();
+    }
+
+    /**
+     * Prints the types of interactions in a file with their number of rows.
+     * <p>
+     * Expects the path to the interactions file.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: TypeScan <interactions file>");
+            System.exit(2);
+        }
+        try {
+            TypeScan scan = new TypeScan(args[0]);
+            System.out.println("#Type\tRows");
+            for (Map.Entry<String, Integer> type : scan.getCounts().entrySet()) {
+                System.out.println(type.getKey() + "\t" + type.getValue());
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Specified file not found");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("There was a problem reading the file");
+            System.exit(1);
+        }
+    }
+
+}
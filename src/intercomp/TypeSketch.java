@@ -0,0 +1,293 @@
+package intercomp;
+
+/**
+ * Small fixed-size summary of a set of genes that estimates its size and its overlap with other sets.
+ * <p>
+ * A sketch combines a bottom-k MinHash (the K smallest 64-bit hashes of the gene identifiers) with a HyperLogLog (REGISTERS registers with the longest run of leading zeros of the hashes). The HyperLogLog estimates the number of genes with a relative standard error of about 1.6%; the MinHash estimates the Jaccard similarity of two sets with a standard error of about sqrt(J(1 - J) / K). A sketch takes about 5 KB, whatever the number of genes, and two sketches can be merged into the sketch of the union of their sets.
+ *
+ * @author Alexander
+ */
+public final class TypeSketch {
+
+    /**
+     * The number of smallest hashes kept for the MinHash.
+     */
+    public static final int K = 128;
+
+    private static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final long[] minimums;
+    private int count;
+    private final byte[] registers;
+
+    /**
+     * Constructor for an empty sketch.
+     */
+    public TypeSketch() {
+        this.minimums = new long[K];
+        this.registers = new byte[REGISTERS];
+    }
+
+    /**
+     * Adds a gene to the sketch. Adding a gene that was added before does not change the sketch.
+     *
+     * @param gene the Gene to add.
+     */
+    void add(Gene gene) {
+        add(hash(gene.getGeneID()));
+    }
+
+    /**
+     * Adds the hash of a gene to the MinHash and to the HyperLogLog.
+     *
+     * @param hash the 64-bit hash of the gene identifier.
+     */
+    private void add(long hash) {
+        int register = (int) (hash >>> (64 - PRECISION));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION), 64 - PRECISION) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+        if (count == K && Long.compareUnsigned(hash, minimums[K - 1]) >= 0) {
+            return;
+        }
+        int position = search(minimums, count, hash);
+        if (position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        int moved = Math.min(count, K - 1) - position;
+        System.arraycopy(minimums, position, minimums, position + 1, moved);
+        minimums[position] = hash;
+        count = Math.min(count + 1, K);
+    }
+
+    /**
+     * Returns a new sketch of the union of the sets of this sketch and another sketch.
+     *
+     * @param other the TypeSketch to merge with.
+     * @return a new TypeSketch of the union.
+     */
+    public TypeSketch merge(TypeSketch other) {
+        TypeSketch merged = new TypeSketch();
+        for (int r = 0; r < REGISTERS; r++) {
+            merged.registers[r] = (byte) Math.max(registers[r], other.registers[r]);
+        }
+        for (int i = 0; i < count; i++) {
+            merged.add(minimums[i]);
+        }
+        for (int i = 0; i < other.count; i++) {
+            merged.add(other.minimums[i]);
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the estimated number of genes in the sketched set.
+     * <p>
+     * Uses linear counting for small sets, where the HyperLogLog estimate is biased. When the set has fewer than K genes, the MinHash holds all of them and the size is exact.
+     *
+     * @return the estimated number of genes.
+     */
+    public double estimateSize() {
+        if (count < K) {
+            return count;
+        }
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns the relative standard error of the size estimates of a sketch.
+     *
+     * @return the relative standard error of the HyperLogLog.
+     */
+    public static double sizeError() {
+        return 1.04 / Math.sqrt(REGISTERS);
+    }
+
+    /**
+     * Estimates the sizes, the intersection and the Jaccard similarity of the sets of two sketches.
+     * <p>
+     * The Jaccard similarity is the fraction of the K smallest hashes of the union that are in both sets. The intersection is the Jaccard similarity times the estimated size of the union.
+     *
+     * @param a the TypeSketch of the first set.
+     * @param b the TypeSketch of the second set.
+     * @return an Estimate of the overlap of both sets.
+     */
+    public static Estimate estimate(TypeSketch a, TypeSketch b) {
+        TypeSketch union = a.merge(b);
+        int shared = 0;
+        for (int i = 0; i < union.count; i++) {
+            long hash = union.minimums[i];
+            if (search(a.minimums, a.count, hash) >= 0 && search(b.minimums, b.count, hash) >= 0) {
+                shared++;
+            }
+        }
+        double jaccard = union.count == 0 ? 0 : (double) shared / union.count;
+        // Without a floor the error would be 0 for sets that share none or all of the K smallest hashes
+        double jaccardError = union.count < K ? 0 : Math.sqrt(Math.max(jaccard * (1 - jaccard), 1.0 / K) / K);
+        double sizeA = a.estimateSize();
+        double sizeB = b.estimateSize();
+        double intersection = Math.min(jaccard * union.estimateSize(), Math.min(sizeA, sizeB));
+        return new Estimate(sizeA, sizeB, intersection, jaccard, jaccardError, union.count < K);
+    }
+
+    /**
+     * Searches a hash in the first values of a sorted array of hashes, ordered as unsigned numbers.
+     *
+     * @param hashes the sorted array of hashes.
+     * @param length the number of values in the array to search.
+     * @param hash the hash to search for.
+     * @return the index of the hash, or (-(insertion point) - 1) when it is not found.
+     */
+    private static int search(long[] hashes, int length, long hash) {
+        int low = 0;
+        int high = length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int order = Long.compareUnsigned(hashes[middle], hash);
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns a 64-bit hash of a gene identifier (FNV-1a followed by the MurmurHash3 finalizer).
+     *
+     * @param geneID the gene identifier to hash.
+     * @return the 64-bit hash.
+     */
+    static long hash(String geneID) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < geneID.length(); i++) {
+            hash ^= geneID.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TypeSketch[~%.0f genes, %d minimums]", estimateSize(), count);
+    }
+
+    /**
+     * Estimated overlap of two sketched sets of genes.
+     */
+    public static final class Estimate {
+
+        private final double sizeA;
+        private final double sizeB;
+        private final double intersection;
+        private final double jaccard;
+        private final double jaccardError;
+        private final boolean exact;
+
+        Estimate(double sizeA, double sizeB, double intersection, double jaccard, double jaccardError, boolean exact) {
+            this.sizeA = sizeA;
+            this.sizeB = sizeB;
+            this.intersection = intersection;
+            this.jaccard = jaccard;
+            this.jaccardError = jaccardError;
+            this.exact = exact;
+        }
+
+        /**
+         * Returns the estimated number of genes in the first set.
+         *
+         * @return the estimated size of the first set.
+         */
+        public long getSizeA() {
+            return Math.round(sizeA);
+        }
+
+        /**
+         * Returns the estimated number of genes in the second set.
+         *
+         * @return the estimated size of the second set.
+         */
+        public long getSizeB() {
+            return Math.round(sizeB);
+        }
+
+        /**
+         * Returns the estimated number of genes in both sets.
+         *
+         * @return the estimated size of the intersection.
+         */
+        public long getIntersection() {
+            return Math.round(intersection);
+        }
+
+        /**
+         * Returns the estimated Jaccard similarity, the size of the intersection divided by the size of the union.
+         *
+         * @return the estimated Jaccard similarity between 0 and 1.
+         */
+        public double getJaccard() {
+            return jaccard;
+        }
+
+        /**
+         * Returns the standard error of the estimated Jaccard similarity.
+         *
+         * @return the standard error, 0 when both sets were small enough to be compared exactly.
+         */
+        public double getJaccardError() {
+            return jaccardError;
+        }
+
+        /**
+         * Returns the absolute standard error of the estimated intersection.
+         *
+         * @return the standard error of the intersection in number of genes.
+         */
+        public double getIntersectionError() {
+            if (exact) {
+                return 0;
+            }
+            double union = jaccard > 0 ? intersection / jaccard : sizeA + sizeB;
+            return union * jaccardError + intersection * sizeError();
+        }
+
+        /**
+         * Returns whether the sets were small enough for the sketches to hold all their genes, making the estimate exact.
+         *
+         * @return true when the estimate is exact.
+         */
+        public boolean isExact() {
+            return exact;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("|A| ~ %d, |B| ~ %d, |A n B| ~ %d (+/- %.0f), Jaccard ~ %.3f (+/- %.3f)", getSizeA(), getSizeB(), getIntersection(), getIntersectionError(), jaccard, jaccardError);
+        }
+    }
+
+}
@@ -0,0 +1,243 @@
+package intercomp;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * Checks the allocation and throughput of the hot paths against checked-in budgets.
+ * <p>
+ * Generates a reproducible interactions file, loads it, compares two types and exports the results, and measures every step on the current thread: the bytes allocated per row (with the per-thread allocation counter of the HotSpot ThreadMXBean) and the rows per second. Every step is run a few times first so the JIT has compiled it, and the best of the measured runs is used. Exits with code 1 when a measurement is over its budget, so the Ant target "perf" fails the build.
+ *
+ * @author Alexander
+ */
+public class PerformanceBudget {
+
+    private static final String[] TYPES = {"activates", "binds", "inhibits", "interacts with"};
+
+    private final Properties budgets;
+    private final com.sun.management.ThreadMXBean threads;
+    private final List<String> failures;
+
+    /**
+     * Constructor for a check against a set of budgets.
+     *
+     * @param budgets the Properties with the dataset settings and the budgets.
+     */
+    PerformanceBudget(Properties budgets) {
+        this.budgets = budgets;
+        this.threads = allocationCounter();
+        this.failures = new ArrayList<>();
+    }
+
+    /**
+     * Returns the ThreadMXBean that counts the bytes allocated per thread, if the JVM has one.
+     *
+     * @return the HotSpot ThreadMXBean with allocation counting enabled, or null when it is not supported.
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) bean;
+        if (!counter.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        counter.setThreadAllocatedMemoryEnabled(true);
+        return counter;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far.
+     *
+     * @return the allocated bytes, or 0 when allocations can not be counted.
+     */
+    private long allocated() {
+        return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Writes a reproducible interactions file in the format of the NCBI interactions file.
+     *
+     * @param file the File to write.
+     * @param rows the number of interaction rows.
+     * @param genes the number of genes on each side.
+     * @param seed the seed of the random number generator.
+     * @throws IOException when the file can not be written.
+     */
+    static void generate(File file, int rows, int genes, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writer.write("#tax_id\tgene_id\taccn_vers\tname\tkeyphrase\ttax_id\tgene_id\taccn_vers\tname\tpubmed_id_list\tlast_mod\tgeneRIF_text\n");
+            for (int r = 0; r < rows; r++) {
+                int geneA = 1 + random.nextInt(genes / 4);
+                int geneB = 100000 + random.nextInt(genes);
+                StringBuilder line = new StringBuilder(160);
+                line.append("11676\t").append(geneA).append("\tNP_").append(geneA).append(".1\tgag").append(geneA).append('\t');
+                line.append(TYPES[random.nextInt(TYPES.length)]).append('\t');
+                line.append("9606\t").append(geneB).append("\tNP_").append(geneB).append(".2\tPROT").append(geneB).append('\t');
+                for (int p = 1 + random.nextInt(3); p > 0; p--) {
+                    line.append(1000000 + random.nextInt(genes)).append(p > 1 ? "," : "\t");
+                }
+                line.append(String.format("%d/%02d/%02d %02d:%02d", 2003 + random.nextInt(14), 1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24), random.nextInt(60)));
+                line.append("\tsome text ").append(r).append('\n');
+                writer.write(line.toString());
+            }
+        }
+    }
+
+    /**
+     * A step of the check that is measured.
+     */
+    private interface Step {
+
+        /**
+         * Runs the step once.
+         *
+         * @return the number of rows the step handled.
+         * @throws Exception when the step fails.
+         */
+        long run() throws Exception;
+    }
+
+    /**
+     * Runs a step a number of times and checks its best run against the budgets of the step.
+     * <p>
+     * The budgets are read from the properties NAME.bytesPerRow (maximum) and NAME.rowsPerSecond (minimum); a missing budget is only reported.
+     *
+     * @param name the name of the step in the budgets.
+     * @param step the Step to measure.
+     * @throws Exception when the step fails.
+     */
+    void measure(String name, Step step) throws Exception {
+        int warmup = Integer.parseInt(budgets.getProperty("warmup", "3"));
+        int runs = Integer.parseInt(budgets.getProperty("runs", "3"));
+        for (int w = 0; w < warmup; w++) {
+            step.run();
+        }
+        double bytesPerRow = Double.MAX_VALUE;
+        double rowsPerSecond = 0;
+        for (int r = 0; r < runs; r++) {
+            long bytes = allocated();
+            long start = System.nanoTime();
+            long rows = step.run();
+            long time = System.nanoTime() - start;
+            bytes = allocated() - bytes;
+            bytesPerRow = Math.min(bytesPerRow, (double) bytes / Math.max(1, rows));
+            rowsPerSecond = Math.max(rowsPerSecond, rows * 1e9 / Math.max(1, time));
+        }
+        if (threads != null) {
+            check(name + ".bytesPerRow", bytesPerRow, true);
+        }
+        check(name + ".rowsPerSecond", rowsPerSecond, false);
+    }
+
+    /**
+     * Compares one measurement with its budget and prints the result.
+     *
+     * @param key the name of the budget.
+     * @param value the measured value.
+     * @param maximum true when the budget is a maximum, false when it is a minimum.
+     */
+    private void check(String key, double value, boolean maximum) {
+        String budget = budgets.getProperty(key);
+        String verdict = "no budget";
+        if (budget != null) {
+            double limit = Double.parseDouble(budget);
+            boolean ok = maximum ? value <= limit : value >= limit;
+            verdict = (ok ? "ok, " : "OVER BUDGET, ") + (maximum ? "max " : "min ") + budget;
+            if (!ok) {
+                failures.add(key);
+            }
+        }
+        System.out.println(String.format("%-34s %14.1f   %s", key, value, verdict));
+    }
+
+    /**
+     * Generates the dataset and measures the load, compare and export steps.
+     *
+     * @return a List with the names of the budgets that were exceeded.
+     * @throws Exception when a step fails.
+     */
+    List<String> run() throws Exception {
+        if (threads == null) {
+            System.out.println("This JVM can not count allocations per thread; only the throughput is checked");
+        }
+        final File directory = new File(budgets.getProperty("directory", System.getProperty("java.io.tmpdir")));
+        final File data = File.createTempFile("perf-interactions", ".txt", directory);
+        final File export = File.createTempFile("perf-export", ".txt", directory);
+        data.deleteOnExit();
+        export.deleteOnExit();
+        final int rows = Integer.parseInt(budgets.getProperty("rows", "200000"));
+        generate(data, rows, Integer.parseInt(budgets.getProperty("genes", "20000")), Long.parseLong(budgets.getProperty("seed", "1")));
+        final InteractionsFile[] loaded = new InteractionsFile[1];
+        measure("load", () -> {
+            loaded[0] = new InteractionsFile(data.getAbsolutePath());
+            return loaded[0].getRowCount();
+        });
+        final List<Interaction> interactions = loaded[0].getInteractions();
+        final Comparison[] compared = new Comparison[1];
+        measure("compare", () -> {
+            compared[0] = loaded[0].compare(TYPES[0], TYPES[1], InteractionComperator.Side.EITHER);
+            return interactions.size();
+        });
+        measure("export.genes", () -> {
+            compared[0].exportGenes(export.getAbsolutePath());
+            return compared[0].getGenesIntersection().size();
+        });
+        measure("export.pubmed", () -> {
+            Comparison fresh = compared[0].withSide(InteractionComperator.Side.B).withSide(InteractionComperator.Side.EITHER);
+            fresh.exportPubMed(export.getAbsolutePath());
+            return interactions.size();
+        });
+        final int sources = compared[0].getSources().length;
+        measure("export.rows", () -> {
+            loaded[0].exportRows(compared[0], export.getAbsolutePath());
+            return sources;
+        });
+        data.delete();
+        export.delete();
+        return failures;
+    }
+
+    /**
+     * Runs the check.
+     * <p>
+     * Expects the path to the properties file with the budgets. Exits with code 1 when a budget is exceeded.
+     *
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: PerformanceBudget <budgets file>");
+            System.exit(2);
+        }
+        Properties budgets = new Properties();
+        try (InputStream in = new FileInputStream(args[0])) {
+            budgets.load(in);
+            List<String> failures = new PerformanceBudget(budgets).run();
+            if (!failures.isEmpty()) {
+                System.err.println("Over budget: " + String.join(", ", failures));
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            System.err.println("There was a problem reading or writing a file: " + e.getMessage());
+            System.exit(1);
+        } catch (Exception e) {
+            System.err.println("A measured step failed: " + e);
+            System.exit(1);
+        }
+    }
+
+}